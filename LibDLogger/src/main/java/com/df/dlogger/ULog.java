@@ -1,9 +1,13 @@
 package com.df.dlogger;
 
 import android.support.annotation.NonNull;
-import android.util.Log;
 
+import com.df.dlogger.constant.DLevel;
+import com.df.dlogger.logger.CallSite;
+import com.df.dlogger.logger.CallerResolver;
 import com.df.dlogger.logger.DLog;
+import com.df.dlogger.logger.DSupplier;
+import com.df.dlogger.logger.LogGate;
 import com.df.dlogger.printer.ConsolePrinter;
 
 
@@ -11,6 +15,10 @@ import com.df.dlogger.printer.ConsolePrinter;
  * Log工具，类似android.util.Log。 tag自动产生，格式:
  * customTagPrefix:className.methodName(L:lineNumber)
  * customTagPrefix为空时只输出：className.methodName(L:lineNumber)。
+ * <p>
+ * 格式化输出需要指定tag，如 ULog.d(tag, "size={}", list.size())，'{}'会依次替换为参数，
+ * 只有日志需要输出时才会格式化；不指定tag的 d(format, arg) 与已有的 d(tag, content) 冲突，所以不提供.
+ * 内容生成开销较大时可以使用 ULog.d(() -> json.toString())。
  *
  * @author dongfang
  */
@@ -29,37 +37,27 @@ public final class ULog {
         ConsolePrinter.setLog(islog);
     }
 
-    private static boolean allowD = true;
-    private static boolean allowE = true;
-    private static boolean allowI = true;
-    private static boolean allowV = true;
-    private static boolean allowW = true;
-    private static boolean allowWtf = true;
-
     /**
      * 设置是否输出日志，无论是控制台还是本地持有化
      *
      * @param islog true of false
      */
     public static void setULog(boolean islog) {
-        allowD = allowE = allowI = allowV = allowW = allowWtf = islog;
+        LogGate.setFacade(islog);
     }
 
-    private static String generateTag(StackTraceElement caller) {
-        // String tag = "%s.%s(L:%d)";
-        String callerClazzName = caller.getClassName();
-        callerClazzName = callerClazzName.substring(callerClazzName.lastIndexOf(".") + 1);
-        int index = callerClazzName.indexOf("$");
-        if (index > 0) {
-            callerClazzName = callerClazzName.substring(0, index);
-        }
-        // tag = String.format(tag, callerClazzName, caller.getMethodName(), caller.getLineNumber());
-        // tag = TextUtils.isEmpty(customTagPrefix) ? tag : customTagPrefix + ":" + tag;
-        return "(" + callerClazzName + ".java:" + caller.getLineNumber() + ")" + "#" + caller.getMethodName();
+    /**
+     * 获取调用位置的tag，格式:(className.java:lineNumber)#methodName，同一调用点的tag会被缓存
+     */
+    private static String siteTag() {
+        return CallerResolver.resolve(ULog.class).getTag();
     }
 
-    private static StackTraceElement getCallerStackTraceElement() {
-        return Thread.currentThread().getStackTrace()[4];
+    /**
+     * 获取带自定义前缀的调用位置tag，格式:prefix/(className.java:lineNumber)#methodName
+     */
+    private static String siteTag(String prefix) {
+        return CallerResolver.resolve(ULog.class).getTag(prefix);
     }
 
 
@@ -67,22 +65,53 @@ public final class ULog {
     // verbose
     ///////////////////////////////////////////////////////////////////////////
     public static void v(@NonNull String content) {
-        if (!allowV) return;
-        ver(generateTag(getCallerStackTraceElement()), content, null);
+        if (!LogGate.isEnabled(DLevel.VERBOSE)) return;
+        ver(siteTag(), content, null);
     }
 
     public static void v(@NonNull String tag, @NonNull String content) {
-        if (!allowV) return;
-        ver(tag + "/" + generateTag(getCallerStackTraceElement()), content, null);
+        if (!LogGate.isEnabled(DLevel.VERBOSE)) return;
+        ver(siteTag(tag), content, null);
     }
 
     public static void v(@NonNull String tag, @NonNull String content, @NonNull Throwable tr) {
-        if (!allowV) return;
-        ver(tag + "/" + generateTag(getCallerStackTraceElement()), content, tr);
+        if (!LogGate.isEnabled(DLevel.VERBOSE)) return;
+        ver(siteTag(tag), content, tr);
+    }
+
+    public static void v(@NonNull DSupplier<String> supplier) {
+        if (!LogGate.isEnabled(DLevel.VERBOSE)) return;
+        DLog.getInstance().verbose(siteTag(), supplier);
+    }
+
+    public static void v(@NonNull String tag, @NonNull DSupplier<String> supplier) {
+        if (!LogGate.isEnabled(DLevel.VERBOSE)) return;
+        DLog.getInstance().verbose(siteTag(tag), supplier);
+    }
+
+    public static void v(@NonNull String tag, @NonNull String format, Object arg) {
+        if (!LogGate.isEnabled(DLevel.VERBOSE)) return;
+        DLog.getInstance().verbose(siteTag(tag), format, arg);
+    }
+
+    public static void v(@NonNull String tag, @NonNull String format, Object arg1, Object arg2) {
+        if (!LogGate.isEnabled(DLevel.VERBOSE)) return;
+        DLog.getInstance().verbose(siteTag(tag), format, arg1, arg2);
+    }
+
+    public static void v(@NonNull String tag, @NonNull String format, Object arg1, Object arg2, Object arg3) {
+        if (!LogGate.isEnabled(DLevel.VERBOSE)) return;
+        DLog.getInstance().verbose(siteTag(tag), format, arg1, arg2, arg3);
     }
 
-    private static void ver(@NonNull String tag, @NonNull String content, Throwable tr) {
-        DLog.getInstance().verbose(tag, null == tr ? content : content + "\n" + Log.getStackTraceString(tr));
+    public static void v(@NonNull String tag, @NonNull String format,
+                         Object arg1, Object arg2, Object arg3, Object... args) {
+        if (!LogGate.isEnabled(DLevel.VERBOSE)) return;
+        DLog.getInstance().verbose(siteTag(tag), format, arg1, arg2, arg3, args);
+    }
+
+    private static void ver(@NonNull String tag, String content, Throwable tr) {
+        DLog.getInstance().verbose(tag, content, tr);
     }
 
     ///////////////////////////////////////////////////////////////////////////
@@ -90,153 +119,307 @@ public final class ULog {
     ///////////////////////////////////////////////////////////////////////////
 
     public static void d(@NonNull String content) {
-        if (!allowD) return;
-        debug(generateTag(getCallerStackTraceElement()), content, null);
+        if (!LogGate.isEnabled(DLevel.DEBUG)) return;
+        debug(siteTag(), content, null);
     }
 
     public static void d(@NonNull String tag, @NonNull String content) {
-        if (!allowD) return;
-        debug(tag + "/" + generateTag(getCallerStackTraceElement()), content, null);
+        if (!LogGate.isEnabled(DLevel.DEBUG)) return;
+        debug(siteTag(tag), content, null);
     }
 
     public static void d(@NonNull String content, @NonNull Throwable tr) {
-        if (!allowD) return;
-        debug(generateTag(getCallerStackTraceElement()), content, tr);
+        if (!LogGate.isEnabled(DLevel.DEBUG)) return;
+        debug(siteTag(), content, tr);
     }
 
     public static void d(@NonNull String tag, @NonNull String content, @NonNull Throwable tr) {
-        if (!allowD) return;
-        debug(tag + "/" + generateTag(getCallerStackTraceElement()), content, tr);
+        if (!LogGate.isEnabled(DLevel.DEBUG)) return;
+        debug(siteTag(tag), content, tr);
     }
 
-    private static void debug(@NonNull String tag, @NonNull String content, Throwable tr) {
-        DLog.getInstance().debug(tag, null == tr ? content : content + "\n" + Log.getStackTraceString(tr));
+    public static void d(@NonNull DSupplier<String> supplier) {
+        if (!LogGate.isEnabled(DLevel.DEBUG)) return;
+        DLog.getInstance().debug(siteTag(), supplier);
+    }
+
+    public static void d(@NonNull String tag, @NonNull DSupplier<String> supplier) {
+        if (!LogGate.isEnabled(DLevel.DEBUG)) return;
+        DLog.getInstance().debug(siteTag(tag), supplier);
+    }
+
+    public static void d(@NonNull String tag, @NonNull String format, Object arg) {
+        if (!LogGate.isEnabled(DLevel.DEBUG)) return;
+        DLog.getInstance().debug(siteTag(tag), format, arg);
+    }
+
+    public static void d(@NonNull String tag, @NonNull String format, Object arg1, Object arg2) {
+        if (!LogGate.isEnabled(DLevel.DEBUG)) return;
+        DLog.getInstance().debug(siteTag(tag), format, arg1, arg2);
+    }
+
+    public static void d(@NonNull String tag, @NonNull String format, Object arg1, Object arg2, Object arg3) {
+        if (!LogGate.isEnabled(DLevel.DEBUG)) return;
+        DLog.getInstance().debug(siteTag(tag), format, arg1, arg2, arg3);
+    }
+
+    public static void d(@NonNull String tag, @NonNull String format,
+                         Object arg1, Object arg2, Object arg3, Object... args) {
+        if (!LogGate.isEnabled(DLevel.DEBUG)) return;
+        DLog.getInstance().debug(siteTag(tag), format, arg1, arg2, arg3, args);
+    }
+
+    private static void debug(@NonNull String tag, String content, Throwable tr) {
+        DLog.getInstance().debug(tag, content, tr);
     }
 
     ///////////////////////////////////////////////////////////////////////////
     // info
     ///////////////////////////////////////////////////////////////////////////
     public static void i(@NonNull String content) {
-        if (!allowI) return;
-        info(generateTag(getCallerStackTraceElement()), content, null);
+        if (!LogGate.isEnabled(DLevel.INFO)) return;
+        info(siteTag(), content, null);
     }
 
     public static void i(String tag, @NonNull String content) {
-        if (!allowI) return;
-        info(tag + "/" + generateTag(getCallerStackTraceElement()), content, null);
+        if (!LogGate.isEnabled(DLevel.INFO)) return;
+        info(siteTag(tag), content, null);
     }
 
     public static void i(@NonNull String content, @NonNull Throwable tr) {
-        if (!allowI) return;
-        info(generateTag(getCallerStackTraceElement()), content, tr);
+        if (!LogGate.isEnabled(DLevel.INFO)) return;
+        info(siteTag(), content, tr);
     }
 
     public static void i(String tag, @NonNull String content, @NonNull Throwable tr) {
-        if (!allowI) return;
-        info(tag + "/" + generateTag(getCallerStackTraceElement()), content, tr);
+        if (!LogGate.isEnabled(DLevel.INFO)) return;
+        info(siteTag(tag), content, tr);
+    }
+
+    public static void i(@NonNull DSupplier<String> supplier) {
+        if (!LogGate.isEnabled(DLevel.INFO)) return;
+        DLog.getInstance().info(siteTag(), supplier);
+    }
+
+    public static void i(@NonNull String tag, @NonNull DSupplier<String> supplier) {
+        if (!LogGate.isEnabled(DLevel.INFO)) return;
+        DLog.getInstance().info(siteTag(tag), supplier);
+    }
+
+    public static void i(@NonNull String tag, @NonNull String format, Object arg) {
+        if (!LogGate.isEnabled(DLevel.INFO)) return;
+        DLog.getInstance().info(siteTag(tag), format, arg);
+    }
+
+    public static void i(@NonNull String tag, @NonNull String format, Object arg1, Object arg2) {
+        if (!LogGate.isEnabled(DLevel.INFO)) return;
+        DLog.getInstance().info(siteTag(tag), format, arg1, arg2);
+    }
+
+    public static void i(@NonNull String tag, @NonNull String format, Object arg1, Object arg2, Object arg3) {
+        if (!LogGate.isEnabled(DLevel.INFO)) return;
+        DLog.getInstance().info(siteTag(tag), format, arg1, arg2, arg3);
     }
 
-    private static void info(@NonNull String tag, @NonNull String content, Throwable tr) {
-        DLog.getInstance().info(tag, null == tr ? content : content + "\n" + Log.getStackTraceString(tr));
+    public static void i(@NonNull String tag, @NonNull String format,
+                         Object arg1, Object arg2, Object arg3, Object... args) {
+        if (!LogGate.isEnabled(DLevel.INFO)) return;
+        DLog.getInstance().info(siteTag(tag), format, arg1, arg2, arg3, args);
+    }
+
+    private static void info(@NonNull String tag, String content, Throwable tr) {
+        DLog.getInstance().info(tag, content, tr);
     }
 
     ///////////////////////////////////////////////////////////////////////////
     // warn
     ///////////////////////////////////////////////////////////////////////////
     public static void w(@NonNull String content) {
-        if (!allowW) return;
-        warn(generateTag(getCallerStackTraceElement()), content, null);
+        if (!LogGate.isEnabled(DLevel.WARN)) return;
+        warn(siteTag(), content, null);
     }
 
     public static void w(String tag, @NonNull String content) {
-        if (!allowW) return;
-        warn(tag + "/" + generateTag(getCallerStackTraceElement()), content, null);
+        if (!LogGate.isEnabled(DLevel.WARN)) return;
+        warn(siteTag(tag), content, null);
     }
 
     public static void w(@NonNull String content, @NonNull Throwable tr) {
-        if (!allowW) return;
-        warn(generateTag(getCallerStackTraceElement()), content, tr);
+        if (!LogGate.isEnabled(DLevel.WARN)) return;
+        warn(siteTag(), content, tr);
     }
 
     public static void w(@NonNull Throwable tr) {
-        if (!allowW) return;
-        warn(generateTag(getCallerStackTraceElement()), Log.getStackTraceString(tr), null);
+        if (!LogGate.isEnabled(DLevel.WARN)) return;
+        warn(siteTag(), null, tr);
     }
 
     public static void w(@NonNull String tag, @NonNull String content, @NonNull Throwable tr) {
-        if (!allowW) return;
-        warn(tag + "/" + generateTag(getCallerStackTraceElement()), content, tr);
+        if (!LogGate.isEnabled(DLevel.WARN)) return;
+        warn(siteTag(tag), content, tr);
+    }
+
+    public static void w(@NonNull DSupplier<String> supplier) {
+        if (!LogGate.isEnabled(DLevel.WARN)) return;
+        DLog.getInstance().warn(siteTag(), supplier);
+    }
+
+    public static void w(@NonNull String tag, @NonNull DSupplier<String> supplier) {
+        if (!LogGate.isEnabled(DLevel.WARN)) return;
+        DLog.getInstance().warn(siteTag(tag), supplier);
+    }
+
+    public static void w(@NonNull String tag, @NonNull String format, Object arg) {
+        if (!LogGate.isEnabled(DLevel.WARN)) return;
+        DLog.getInstance().warn(siteTag(tag), format, arg);
+    }
+
+    public static void w(@NonNull String tag, @NonNull String format, Object arg1, Object arg2) {
+        if (!LogGate.isEnabled(DLevel.WARN)) return;
+        DLog.getInstance().warn(siteTag(tag), format, arg1, arg2);
     }
 
-    private static void warn(@NonNull String tag, @NonNull String content, Throwable tr) {
-        DLog.getInstance().warn(tag, null == tr ? content : content + "\n" + Log.getStackTraceString(tr));
+    public static void w(@NonNull String tag, @NonNull String format, Object arg1, Object arg2, Object arg3) {
+        if (!LogGate.isEnabled(DLevel.WARN)) return;
+        DLog.getInstance().warn(siteTag(tag), format, arg1, arg2, arg3);
+    }
+
+    public static void w(@NonNull String tag, @NonNull String format,
+                         Object arg1, Object arg2, Object arg3, Object... args) {
+        if (!LogGate.isEnabled(DLevel.WARN)) return;
+        DLog.getInstance().warn(siteTag(tag), format, arg1, arg2, arg3, args);
+    }
+
+    private static void warn(@NonNull String tag, String content, Throwable tr) {
+        DLog.getInstance().warn(tag, content, tr);
     }
 
     ///////////////////////////////////////////////////////////////////////////
     // error
     ///////////////////////////////////////////////////////////////////////////
     public static void e(@NonNull String content) {
-        if (!allowE) return;
-        error(generateTag(getCallerStackTraceElement()), content, null);
+        if (!LogGate.isEnabled(DLevel.ERROR)) return;
+        error(siteTag(), content, null);
     }
 
     public static void e(@NonNull String tag, @NonNull String content) {
-        if (!allowE) return;
-        error(tag + "/" + generateTag(getCallerStackTraceElement()), content, null);
+        if (!LogGate.isEnabled(DLevel.ERROR)) return;
+        error(siteTag(tag), content, null);
     }
 
     public static void e(@NonNull String content, @NonNull Throwable tr) {
-        if (!allowE) return;
-        error(generateTag(getCallerStackTraceElement()), content, tr);
+        if (!LogGate.isEnabled(DLevel.ERROR)) return;
+        error(siteTag(), content, tr);
     }
 
     public static void e(@NonNull Throwable tr) {
-        if (!allowE) return;
-        error(generateTag(getCallerStackTraceElement()), Log.getStackTraceString(tr), null);
+        if (!LogGate.isEnabled(DLevel.ERROR)) return;
+        error(siteTag(), null, tr);
     }
 
     public static void e(@NonNull String tag, @NonNull String content, @NonNull Throwable tr) {
-        if (!allowE) return;
-        error(tag + "/" + generateTag(getCallerStackTraceElement()), content, tr);
+        if (!LogGate.isEnabled(DLevel.ERROR)) return;
+        error(siteTag(tag), content, tr);
 
     }
 
     public static void e() {
-        if (!allowE) return;
-        StackTraceElement caller = getCallerStackTraceElement();
-        String tag = generateTag(caller);
-        error(tag, caller.getMethodName(), null);
+        if (!LogGate.isEnabled(DLevel.ERROR)) return;
+        CallSite site = CallerResolver.resolve(ULog.class);
+        error(site.getTag(), site.getMethodName(), null);
+    }
+
+
+    public static void e(@NonNull DSupplier<String> supplier) {
+        if (!LogGate.isEnabled(DLevel.ERROR)) return;
+        DLog.getInstance().error(siteTag(), supplier);
+    }
+
+    public static void e(@NonNull String tag, @NonNull DSupplier<String> supplier) {
+        if (!LogGate.isEnabled(DLevel.ERROR)) return;
+        DLog.getInstance().error(siteTag(tag), supplier);
     }
 
+    public static void e(@NonNull String tag, @NonNull String format, Object arg) {
+        if (!LogGate.isEnabled(DLevel.ERROR)) return;
+        DLog.getInstance().error(siteTag(tag), format, arg);
+    }
+
+    public static void e(@NonNull String tag, @NonNull String format, Object arg1, Object arg2) {
+        if (!LogGate.isEnabled(DLevel.ERROR)) return;
+        DLog.getInstance().error(siteTag(tag), format, arg1, arg2);
+    }
+
+    public static void e(@NonNull String tag, @NonNull String format, Object arg1, Object arg2, Object arg3) {
+        if (!LogGate.isEnabled(DLevel.ERROR)) return;
+        DLog.getInstance().error(siteTag(tag), format, arg1, arg2, arg3);
+    }
 
-    private static void error(@NonNull String tag, @NonNull String content, Throwable tr) {
-        DLog.getInstance().error(tag, null == tr ? content : content + "\n" + Log.getStackTraceString(tr));
+    public static void e(@NonNull String tag, @NonNull String format,
+                         Object arg1, Object arg2, Object arg3, Object... args) {
+        if (!LogGate.isEnabled(DLevel.ERROR)) return;
+        DLog.getInstance().error(siteTag(tag), format, arg1, arg2, arg3, args);
+    }
+
+    private static void error(@NonNull String tag, String content, Throwable tr) {
+        DLog.getInstance().error(tag, content, tr);
     }
 
     ///////////////////////////////////////////////////////////////////////////
     // wtf
     ///////////////////////////////////////////////////////////////////////////
     public static void wtf(@NonNull String content) {
-        if (!allowWtf) return;
-        azzert(generateTag(getCallerStackTraceElement()), content, null);
+        if (!LogGate.isEnabled(DLevel.WTF)) return;
+        azzert(siteTag(), content, null);
     }
 
     public static void wtf(String tag, @NonNull String content) {
-        if (!allowWtf) return;
-        azzert(tag + "/" + generateTag(getCallerStackTraceElement()), content, null);
+        if (!LogGate.isEnabled(DLevel.WTF)) return;
+        azzert(siteTag(tag), content, null);
     }
 
     public static void wtf(@NonNull Throwable tr) {
-        if (!allowWtf) return;
-        azzert(generateTag(getCallerStackTraceElement()), Log.getStackTraceString(tr), null);
+        if (!LogGate.isEnabled(DLevel.WTF)) return;
+        azzert(siteTag(), null, tr);
     }
 
     public static void wtf(@NonNull String tag, @NonNull String content, @NonNull Throwable tr) {
-        if (!allowWtf) return;
-        azzert(tag + "/" + generateTag(getCallerStackTraceElement()), content, tr);
+        if (!LogGate.isEnabled(DLevel.WTF)) return;
+        azzert(siteTag(tag), content, tr);
+    }
+
+    public static void wtf(@NonNull DSupplier<String> supplier) {
+        if (!LogGate.isEnabled(DLevel.WTF)) return;
+        DLog.getInstance().azzert(siteTag(), supplier);
+    }
+
+    public static void wtf(@NonNull String tag, @NonNull DSupplier<String> supplier) {
+        if (!LogGate.isEnabled(DLevel.WTF)) return;
+        DLog.getInstance().azzert(siteTag(tag), supplier);
+    }
+
+    public static void wtf(@NonNull String tag, @NonNull String format, Object arg) {
+        if (!LogGate.isEnabled(DLevel.WTF)) return;
+        DLog.getInstance().azzert(siteTag(tag), format, arg);
+    }
+
+    public static void wtf(@NonNull String tag, @NonNull String format, Object arg1, Object arg2) {
+        if (!LogGate.isEnabled(DLevel.WTF)) return;
+        DLog.getInstance().azzert(siteTag(tag), format, arg1, arg2);
+    }
+
+    public static void wtf(@NonNull String tag, @NonNull String format, Object arg1, Object arg2, Object arg3) {
+        if (!LogGate.isEnabled(DLevel.WTF)) return;
+        DLog.getInstance().azzert(siteTag(tag), format, arg1, arg2, arg3);
+    }
+
+    public static void wtf(@NonNull String tag, @NonNull String format,
+                           Object arg1, Object arg2, Object arg3, Object... args) {
+        if (!LogGate.isEnabled(DLevel.WTF)) return;
+        DLog.getInstance().azzert(siteTag(tag), format, arg1, arg2, arg3, args);
     }
 
-    private static void azzert(@NonNull String tag, @NonNull String content, Throwable tr) {
-        DLog.getInstance().azzert(tag, null == tr ? content : content + "\n" + Log.getStackTraceString(tr));
+    private static void azzert(@NonNull String tag, String content, Throwable tr) {
+        DLog.getInstance().azzert(tag, content, tr);
     }
 }
@@ -0,0 +1,14 @@
+package com.df.dlogger.constant;
+
+/**
+ * 日志文件格式.
+ */
+public enum DFileFormat {
+
+    /** 文本，每行: 时间-[等级 标签]- 信息 */
+    TEXT,
+    /** 二进制，时间差、等级和标签字典编码，文件后缀加上'.bin'，可用BinaryDecoder还原为文本 */
+    BINARY,
+    /** JSON Lines，每行一个JSON对象，结构化日志的字段单独保存，文件后缀加上'.jsonl' */
+    JSON_LINES
+}
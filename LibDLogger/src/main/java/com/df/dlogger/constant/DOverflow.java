@@ -0,0 +1,18 @@
+package com.df.dlogger.constant;
+
+/**
+ * 写文件队列满时的处理策略.
+ */
+public enum DOverflow {
+
+    /** 等待写文件线程腾出空位，不丢日志 */
+    BLOCK,
+    /** 丢弃新产生的日志 */
+    DROP_NEWEST,
+    /** 丢弃队列中最早的日志 */
+    DROP_OLDEST,
+    /** 丢弃WARN以下的日志，WARN及以上等待 */
+    DROP_BELOW_LEVEL,
+    /** 队列超过一半时WARN以下的日志每N条只保留1条，队列满时丢弃；WARN及以上等待 */
+    SAMPLE
+}
@@ -24,6 +24,10 @@ package com.df.dlogger.constant;
  */
 public enum DSegment {
 
+    FIVE_MINUTES(0, 5),
+    TEN_MINUTES(0, 10),
+    FIFTEEN_MINUTES(0, 15),
+    THIRTY_MINUTES(0, 30),
     ONE_HOUR(1),
     TWO_HOURS(2),
     THREE_HOURS(3),
@@ -33,12 +37,35 @@ public enum DSegment {
     TWENTY_FOUR_HOURS(24);
 
     private int mValue;
+    private int mMinutes;
 
     DSegment(int value) {
+        this(value, value * 60);
+    }
+
+    DSegment(int value, int minutes) {
         mValue = value;
+        mMinutes = minutes;
     }
 
+    /**
+     * @return 小时数，不足一小时的切片为0
+     */
     public int getValue() {
         return mValue;
     }
+
+    /**
+     * @return 分钟数
+     */
+    public int getMinutes() {
+        return mMinutes;
+    }
+
+    /**
+     * @return 切片时长，单位毫秒
+     */
+    public long getMillis() {
+        return mMinutes * 60 * 1000L;
+    }
 }
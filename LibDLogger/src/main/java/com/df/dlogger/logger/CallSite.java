@@ -0,0 +1,73 @@
+package com.df.dlogger.logger;
+
+import android.support.annotation.NonNull;
+
+/**
+ * 日志调用点，缓存由调用位置生成的tag，格式:(className.java:lineNumber)#methodName
+ */
+public final class CallSite {
+
+    /** 调用点自动生成的tag */
+    private final String mTag;
+    /** 调用方法名 */
+    private final String mMethodName;
+    /** 最近一次使用的自定义前缀及拼接结果 */
+    private volatile Prefixed mPrefixed;
+
+    CallSite(@NonNull StackTraceElement caller) {
+        String callerClazzName = caller.getClassName();
+        callerClazzName = callerClazzName.substring(callerClazzName.lastIndexOf('.') + 1);
+        int index = callerClazzName.indexOf('$');
+        if (index > 0) {
+            callerClazzName = callerClazzName.substring(0, index);
+        }
+        mMethodName = caller.getMethodName();
+        mTag = "(" + callerClazzName + ".java:" + caller.getLineNumber() + ")" + "#" + mMethodName;
+    }
+
+    /**
+     * @return 调用点tag
+     */
+    public String getTag() {
+        return mTag;
+    }
+
+    /**
+     * 拼接自定义前缀，同一调用点通常使用固定前缀，因此只缓存最近一次的结果
+     *
+     * @param prefix 自定义前缀
+     * @return prefix/调用点tag
+     */
+    public String getTag(String prefix) {
+        Prefixed prefixed = mPrefixed;
+        if (null != prefixed && prefixed.prefix.equals(prefix)) {
+            return prefixed.tag;
+        }
+        prefix = String.valueOf(prefix);
+        prefixed = new Prefixed(prefix, prefix + "/" + mTag);
+        mPrefixed = prefixed;
+        return prefixed.tag;
+    }
+
+    /**
+     * @return 调用方法名
+     */
+    public String getMethodName() {
+        return mMethodName;
+    }
+
+    @Override
+    public String toString() {
+        return mTag;
+    }
+
+    private static final class Prefixed {
+        final String prefix;
+        final String tag;
+
+        Prefixed(String prefix, String tag) {
+            this.prefix = prefix;
+            this.tag = tag;
+        }
+    }
+}
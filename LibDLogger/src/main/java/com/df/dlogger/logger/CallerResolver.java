@@ -0,0 +1,88 @@
+package com.df.dlogger.logger;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 调用点解析，以栈帧为key缓存生成好的{@link CallSite}，同一行代码第二次调用时不再拼接tag.
+ * 每次调用仍要获取完整的栈，这是主要开销，缓存只省去拼接tag的部分.
+ * <p>
+ * 缓存有上限，超过上限时整体清空后重新累积.
+ */
+public final class CallerResolver {
+
+    /** 缓存调用点数量的上限 */
+    private static final int MAX_CACHE_SIZE = 1024;
+
+    private static final String RESOLVER_NAME = CallerResolver.class.getName();
+
+    private static final ConcurrentHashMap<StackTraceElement, CallSite> sCache = new ConcurrentHashMap<>();
+    private static final AtomicInteger sCacheSize = new AtomicInteger();
+
+    private CallerResolver() {
+        throw new UnsupportedOperationException("cannot be instantiated");
+    }
+
+    /**
+     * 获取调用facade类的代码位置.
+     *
+     * @param facade 日志门面类，如ULog，其自身的栈帧会被跳过
+     * @return 调用点
+     */
+    public static CallSite resolve(@NonNull Class<?> facade) {
+        return resolve(facade.getName());
+    }
+
+    /**
+     * 获取调用facade类的代码位置.
+     *
+     * @param facadeName 日志门面类的完整类名
+     * @return 调用点
+     */
+    public static CallSite resolve(@NonNull String facadeName) {
+        // Throwable只记录当前线程的栈，不需要像Thread.getStackTrace()那样经过VMStack挂起线程
+        StackTraceElement[] trace = new Throwable().getStackTrace();
+        StackTraceElement caller = null;
+        for (StackTraceElement element : trace) {
+            String className = element.getClassName();
+            if (!className.equals(RESOLVER_NAME) && !className.equals(facadeName)) {
+                caller = element;
+                break;
+            }
+        }
+        if (null == caller) {
+            caller = trace[trace.length - 1];
+        }
+        return get(caller);
+    }
+
+    /**
+     * 根据栈帧获取缓存的调用点，没有则生成.
+     *
+     * @param caller 栈帧
+     * @return 调用点
+     */
+    public static CallSite get(@NonNull StackTraceElement caller) {
+        CallSite site = sCache.get(caller);
+        if (null != site) {
+            return site;
+        }
+        site = new CallSite(caller);
+        if (sCacheSize.incrementAndGet() > MAX_CACHE_SIZE) {
+            sCache.clear();
+            sCacheSize.set(1);
+        }
+        CallSite old = sCache.putIfAbsent(caller, site);
+        return null == old ? site : old;
+    }
+
+    /**
+     * 清空调用点缓存
+     */
+    public static void clear() {
+        sCache.clear();
+        sCacheSize.set(0);
+    }
+}
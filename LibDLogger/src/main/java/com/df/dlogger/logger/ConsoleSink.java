@@ -0,0 +1,36 @@
+package com.df.dlogger.logger;
+
+import android.support.annotation.NonNull;
+
+import com.df.dlogger.constant.DLevel;
+import com.df.dlogger.printer.ConsolePrinter;
+
+/**
+ * 控制台输出，与写文件互不影响：有独立的等级和标签过滤，可以切换为异步输出，由"DLog-console"线程输出到logcat.
+ * <p>
+ * 等级会合并到{@link LogGate}中，控制台和文件都不需要的日志在ULog中直接返回.
+ */
+public final class ConsoleSink extends LogSink {
+
+    ConsoleSink() {
+        super("DLog-console");
+    }
+
+    /**
+     * 同时考虑{@link ConsolePrinter#setLog}的总开关
+     */
+    @Override
+    public boolean isLoggable(@NonNull DLevel level, String tag) {
+        return ConsolePrinter.isLoggable(level) && super.isLoggable(level, tag);
+    }
+
+    @Override
+    protected void write(@NonNull DLevel level, @NonNull String tag, @NonNull String message) {
+        ConsolePrinter.log(level, tag, message);
+    }
+
+    @Override
+    void onLevelChanged(int mask) {
+        LogGate.setConsoleLevel(mask);
+    }
+}
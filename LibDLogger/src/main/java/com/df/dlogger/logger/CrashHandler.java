@@ -0,0 +1,50 @@
+package com.df.dlogger.logger;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+/**
+ * 未捕获异常处理，由{@link DLog#installCrashHandler(long)}安装.
+ * <p>
+ * 记录和写入在单独的"DLog-crash"线程中进行，当前线程最多等待timeout，
+ * 即使队列已满或磁盘卡住也会按时交给之前的处理者.
+ */
+final class CrashHandler implements Thread.UncaughtExceptionHandler {
+
+    private static final String TAG = "CrashHandler";
+
+    private final DLog mOwner;
+    /** 之前的处理者，可能为null */
+    private final Thread.UncaughtExceptionHandler mPrevious;
+    private final long mTimeoutMillis;
+
+    CrashHandler(@NonNull DLog owner, Thread.UncaughtExceptionHandler previous, long timeoutMillis) {
+        mOwner = owner;
+        mPrevious = previous;
+        mTimeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public void uncaughtException(Thread t, Throwable e) {
+        try {
+            Thread worker = new Thread(() -> {
+                mOwner.azzert(TAG, "uncaught exception in thread " + t.getName(), e);
+                mOwner.dump();
+                mOwner.flush(mTimeoutMillis);
+            }, "DLog-crash");
+            worker.setDaemon(true);
+            worker.start();
+            worker.join(mTimeoutMillis);
+        } catch (Throwable tr) {
+            Log.e(TAG, "uncaughtException(...)#catch", tr);
+        } finally {
+            if (null != mPrevious) {
+                mPrevious.uncaughtException(t, e);
+            } else {
+                // 与ThreadGroup的默认处理一致；不能交给ThreadGroup，否则又会调用到这里
+                System.err.print("Exception in thread \"" + t.getName() + "\" ");
+                e.printStackTrace(System.err);
+            }
+        }
+    }
+}
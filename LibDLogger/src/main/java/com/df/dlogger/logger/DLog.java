@@ -4,8 +4,14 @@ import android.support.annotation.NonNull;
 import android.util.Log;
 
 import com.df.dlogger.constant.DLevel;
+import com.df.dlogger.printer.CompressStats;
 import com.df.dlogger.printer.DefaultPrinter;
-import com.df.dlogger.util.SysUtils;
+import com.df.dlogger.printer.MemoryRingPrinter;
+import com.df.dlogger.printer.Printer;
+import com.df.dlogger.util.FileUtils;
+import com.df.dlogger.util.MessageFormatter;
+
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -16,21 +22,54 @@ import com.df.dlogger.util.SysUtils;
  */
 public class DLog {
 
+    private static final String TAG = "DLog";
+
+    /** 队列容量 */
+    private static final int RING_SIZE = 1024;
+
     private DSetting mSetting;
     private DefaultPrinter mPrinter;
-
-    private final String lineSeparator;
+    /** 控制台输出 */
+    private final ConsoleSink mConsole = new ConsoleSink();
+    /** 通过addPrinter添加的输出目标，写时复制，输出时不加锁 */
+    private volatile PrinterSink[] mSinks = new PrinterSink[0];
+    /** 写文件线程 */
+    private final LogWriter mWriter;
+    /** 是否已安装未捕获异常处理 */
+    private boolean isCrashHandlerInstalled;
+    /** 每个线程复用的结构化日志 */
+    private final ThreadLocal<LogBuilder> mBuilders = new ThreadLocal<LogBuilder>() {
+        @Override
+        protected LogBuilder initialValue() {
+            return new LogBuilder(DLog.this);
+        }
+    };
 
     private DLog() {
-        mSetting = new DSetting();
-        mPrinter = new DefaultPrinter(mSetting);
-        lineSeparator = SysUtils.getLineSeparator();
+        this(new DSetting());
     }
 
     private DLog(DSetting setting) {
         mSetting = setting;
         mPrinter = new DefaultPrinter(mSetting);
-        lineSeparator = SysUtils.getLineSeparator();
+        mWriter = new LogWriter(new EventRing(RING_SIZE), new EventRing.EventHandler() {
+            @Override
+            public void onEvent(@NonNull LogEvent event, boolean endOfBatch) {
+                mPrinter.write(event);
+            }
+
+            @Override
+            public void onFlush() {
+                mPrinter.flush();
+            }
+
+            @Override
+            public void onSync() {
+                mPrinter.flush();
+                mPrinter.sync();
+            }
+        }, this);
+        LogGate.setStore(mSetting);
     }
 
 
@@ -56,21 +95,212 @@ public class DLog {
     public DLog setDSettings(@NonNull DSetting setting) {
         mSetting = setting;
         mPrinter.setDSetting(mSetting);
+        LogGate.setStore(mSetting);
         return this;
     }
 
+    /**
+     * DSetting中影响日志开关的属性被修改时调用，若是当前使用的DSetting则更新{@link LogGate}
+     *
+     * @param setting 被修改的DSetting
+     */
+    static void onSettingChanged(@NonNull DSetting setting) {
+        DLog dLog = sDLog;
+        if (null != dLog && dLog.mSetting == setting) {
+            LogGate.setStore(setting);
+        }
+    }
+
     public DSetting getSetting() {
         return mSetting;
     }
 
+    /**
+     * 获取控制台输出，可单独设置等级、标签过滤和异步输出
+     *
+     * @return ConsoleSink
+     */
+    public ConsoleSink getConsole() {
+        return mConsole;
+    }
+
+    /**
+     * 添加一个输出目标，可通过返回的PrinterSink单独设置等级、标签过滤和异步输出;
+     * 同一个Printer重复添加时返回已有的PrinterSink
+     *
+     * @param printer 输出目标
+     * @return PrinterSink
+     */
+    public synchronized PrinterSink addPrinter(@NonNull Printer printer) {
+        PrinterSink[] sinks = mSinks;
+        for (PrinterSink sink : sinks) {
+            if (sink.getPrinter() == printer) return sink;
+        }
+        PrinterSink sink = new PrinterSink(printer, this);
+        PrinterSink[] newSinks = new PrinterSink[sinks.length + 1];
+        System.arraycopy(sinks, 0, newSinks, 0, sinks.length);
+        newSinks[sinks.length] = sink;
+        mSinks = newSinks;
+        updateSinkGate();
+        return sink;
+    }
+
+    /**
+     * 移除输出目标，异步队列中剩余的日志会先输出
+     *
+     * @param printer 输出目标
+     * @return true - 已移除，false - 没有添加过
+     */
+    public boolean removePrinter(@NonNull Printer printer) {
+        PrinterSink removed = null;
+        synchronized (this) {
+            PrinterSink[] sinks = mSinks;
+            for (int i = 0; i < sinks.length; i++) {
+                if (sinks[i].getPrinter() == printer) {
+                    removed = sinks[i];
+                    PrinterSink[] newSinks = new PrinterSink[sinks.length - 1];
+                    System.arraycopy(sinks, 0, newSinks, 0, i);
+                    System.arraycopy(sinks, i + 1, newSinks, i, sinks.length - i - 1);
+                    mSinks = newSinks;
+                    break;
+                }
+            }
+            updateSinkGate();
+        }
+        if (null == removed) return false;
+        removed.setAsync(false);
+        return true;
+    }
+
+    /**
+     * 把通过addPrinter添加的MemoryRingPrinter中最近的日志写入日志目录，在写文件线程中进行
+     *
+     * @return 提交dump的MemoryRingPrinter个数
+     */
+    public int dump() {
+        int count = 0;
+        for (PrinterSink sink : mSinks) {
+            if (sink.getPrinter() instanceof MemoryRingPrinter
+                    && ((MemoryRingPrinter) sink.getPrinter()).dump()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 开始一条结构化日志，见{@link LogBuilder}；该等级不需要输出时返回的LogBuilder什么也不做
+     *
+     * @param level 日志等级
+     * @return 当前线程复用的LogBuilder
+     */
+    public LogBuilder at(@NonNull DLevel level) {
+        if (!LogGate.isOutputEnabled(level)) {
+            return LogBuilder.NOOP;
+        }
+        LogBuilder builder = mBuilders.get();
+        // 在kv的参数中又记录结构化日志时，不能覆盖外层的字段
+        return builder.isInUse() ? new LogBuilder(this).begin(level) : builder.begin(level);
+    }
+
+    /**
+     * 输出一条结构化日志，字段只复制到需要输出的LogEvent中
+     *
+     * @param isChecked 是否已在{@link LogBuilder#tag(String)}中判断过限流
+     */
+    void log(@NonNull DLevel level, String tag, String message, Throwable tr, @NonNull LogFields fields,
+             boolean isChecked) {
+        if (isChecked ? isWanted(level, tag) : isLoggable(level, tag)) {
+            LogEvent event = claim(level, tag).setContent(message).setThrowable(tr);
+            event.getFields().copyFrom(fields);
+            print(event);
+        }
+    }
+
+    /**
+     * 等待已提交的日志写入文件并落盘，包括写文件队列、异步输出目标和文件线程中的任务，
+     * 如dump；磁盘卡住时最多等待timeoutMillis，不会无限阻塞. 先输出尚未汇总的限流条数.
+     * <p>
+     * 不能在写文件线程或输出线程中调用.
+     *
+     * @param timeoutMillis 最长等待时间
+     * @return true - 全部完成，false - 超时
+     */
+    public boolean flush(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        mSetting.getRateLimiter().drain(this::reportSuppressed);
+        boolean done = mWriter.sync(deadline - System.nanoTime());
+        done &= mConsole.await(deadline - System.nanoTime());
+        for (PrinterSink sink : mSinks) {
+            done &= sink.await(deadline - System.nanoTime());
+        }
+        // 文件线程中的任务最后等待，之前的步骤可能提交新的任务
+        long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        return FileUtils.await(Math.max(0, left)) && done;
+    }
+
+    /**
+     * 安装未捕获异常处理和退出时的写入，重复调用无效.
+     * <p>
+     * 线程因未捕获的异常结束时，先通过{@link #azzert(String, String, Throwable)}记录异常，
+     * 再dump内存日志并调用{@link #flush(long)}，最后交给之前的处理者(如系统的崩溃处理)；
+     * 整个过程最多等待timeoutMillis，磁盘卡住时不会拖住退出的进程.
+     *
+     * @param timeoutMillis 最长等待时间
+     * @return DLog
+     */
+    public synchronized DLog installCrashHandler(long timeoutMillis) {
+        if (isCrashHandlerInstalled) return this;
+        isCrashHandlerInstalled = true;
+        Thread.setDefaultUncaughtExceptionHandler(
+                new CrashHandler(this, Thread.getDefaultUncaughtExceptionHandler(), timeoutMillis));
+        try {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(timeoutMillis), "DLog-shutdown"));
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "installCrashHandler(...)#catch", e);
+        }
+        return this;
+    }
+
+    /**
+     * 输出目标或其等级变化后更新{@link LogGate}
+     */
+    synchronized void updateSinkGate() {
+        int mask = 0;
+        for (PrinterSink sink : mSinks) {
+            mask |= sink.getLevelMask();
+        }
+        LogGate.setSinkLevel(mask);
+    }
+
+    /**
+     * 获取写文件线程的统计，如每次写入包含的日志条数
+     *
+     * @return WriterStats
+     */
+    public WriterStats getWriterStats() {
+        return mWriter.getStats();
+    }
+
+    /**
+     * 获取已关闭日志文件的压缩统计，如压缩率和CPU时间
+     *
+     * @return CompressStats
+     */
+    public CompressStats getCompressStats() {
+        return mPrinter.getCompressStats();
+    }
+
 
     ///////////////////////////////////////////////////////////////////////////
     // log print
+    // format中的'{}'会依次替换为参数，只有文件或控制台需要输出时才会格式化;
+    // DSupplier同理，只有需要输出时才会调用get()
     ///////////////////////////////////////////////////////////////////////////
 
     public void verbose(String tag, String content, Throwable tr) {
-        if (mSetting.checkStore(DLevel.VERBOSE, tag)) {
-            print(DLevel.VERBOSE, tag, content, tr);
+        if (isLoggable(DLevel.VERBOSE, tag)) {
+            print(claim(DLevel.VERBOSE, tag).setContent(content).setThrowable(tr));
         }
     }
 
@@ -78,9 +308,41 @@ public class DLog {
         verbose(tag, content, null);
     }
 
+    public void verbose(String tag, @NonNull String format, Object arg) {
+        if (isLoggable(DLevel.VERBOSE, tag)) {
+            print(claim(DLevel.VERBOSE, tag).setFormat(format, 1, arg, null, null));
+        }
+    }
+
+    public void verbose(String tag, @NonNull String format, Object arg1, Object arg2) {
+        if (isLoggable(DLevel.VERBOSE, tag)) {
+            print(claim(DLevel.VERBOSE, tag).setFormat(format, 2, arg1, arg2, null));
+        }
+    }
+
+    public void verbose(String tag, @NonNull String format, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(DLevel.VERBOSE, tag)) {
+            print(claim(DLevel.VERBOSE, tag).setFormat(format, 3, arg1, arg2, arg3));
+        }
+    }
+
+    public void verbose(String tag, @NonNull String format,
+                        Object arg1, Object arg2, Object arg3, Object... args) {
+        if (isLoggable(DLevel.VERBOSE, tag)) {
+            print(claim(DLevel.VERBOSE, tag)
+                    .setFormat(format, MessageFormatter.toArray(arg1, arg2, arg3, args)));
+        }
+    }
+
+    public void verbose(String tag, @NonNull DSupplier<String> supplier) {
+        if (isLoggable(DLevel.VERBOSE, tag)) {
+            print(claim(DLevel.VERBOSE, tag).setSupplier(supplier));
+        }
+    }
+
     public void debug(String tag, String content, Throwable tr) {
-        if (mSetting.checkStore(DLevel.DEBUG, tag)) {
-            print(DLevel.DEBUG, tag, content, tr);
+        if (isLoggable(DLevel.DEBUG, tag)) {
+            print(claim(DLevel.DEBUG, tag).setContent(content).setThrowable(tr));
         }
     }
 
@@ -88,9 +350,41 @@ public class DLog {
         debug(tag, content, null);
     }
 
+    public void debug(String tag, @NonNull String format, Object arg) {
+        if (isLoggable(DLevel.DEBUG, tag)) {
+            print(claim(DLevel.DEBUG, tag).setFormat(format, 1, arg, null, null));
+        }
+    }
+
+    public void debug(String tag, @NonNull String format, Object arg1, Object arg2) {
+        if (isLoggable(DLevel.DEBUG, tag)) {
+            print(claim(DLevel.DEBUG, tag).setFormat(format, 2, arg1, arg2, null));
+        }
+    }
+
+    public void debug(String tag, @NonNull String format, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(DLevel.DEBUG, tag)) {
+            print(claim(DLevel.DEBUG, tag).setFormat(format, 3, arg1, arg2, arg3));
+        }
+    }
+
+    public void debug(String tag, @NonNull String format,
+                      Object arg1, Object arg2, Object arg3, Object... args) {
+        if (isLoggable(DLevel.DEBUG, tag)) {
+            print(claim(DLevel.DEBUG, tag)
+                    .setFormat(format, MessageFormatter.toArray(arg1, arg2, arg3, args)));
+        }
+    }
+
+    public void debug(String tag, @NonNull DSupplier<String> supplier) {
+        if (isLoggable(DLevel.DEBUG, tag)) {
+            print(claim(DLevel.DEBUG, tag).setSupplier(supplier));
+        }
+    }
+
     public void info(String tag, String content, Throwable tr) {
-        if (mSetting.checkStore(DLevel.INFO, tag)) {
-            print(DLevel.INFO, tag, content, tr);
+        if (isLoggable(DLevel.INFO, tag)) {
+            print(claim(DLevel.INFO, tag).setContent(content).setThrowable(tr));
         }
     }
 
@@ -98,9 +392,41 @@ public class DLog {
         info(tag, content, null);
     }
 
+    public void info(String tag, @NonNull String format, Object arg) {
+        if (isLoggable(DLevel.INFO, tag)) {
+            print(claim(DLevel.INFO, tag).setFormat(format, 1, arg, null, null));
+        }
+    }
+
+    public void info(String tag, @NonNull String format, Object arg1, Object arg2) {
+        if (isLoggable(DLevel.INFO, tag)) {
+            print(claim(DLevel.INFO, tag).setFormat(format, 2, arg1, arg2, null));
+        }
+    }
+
+    public void info(String tag, @NonNull String format, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(DLevel.INFO, tag)) {
+            print(claim(DLevel.INFO, tag).setFormat(format, 3, arg1, arg2, arg3));
+        }
+    }
+
+    public void info(String tag, @NonNull String format,
+                     Object arg1, Object arg2, Object arg3, Object... args) {
+        if (isLoggable(DLevel.INFO, tag)) {
+            print(claim(DLevel.INFO, tag)
+                    .setFormat(format, MessageFormatter.toArray(arg1, arg2, arg3, args)));
+        }
+    }
+
+    public void info(String tag, @NonNull DSupplier<String> supplier) {
+        if (isLoggable(DLevel.INFO, tag)) {
+            print(claim(DLevel.INFO, tag).setSupplier(supplier));
+        }
+    }
+
     public void warn(String tag, String content, Throwable tr) {
-        if (mSetting.checkStore(DLevel.WARN, tag)) {
-            print(DLevel.WARN, tag, content, tr);
+        if (isLoggable(DLevel.WARN, tag)) {
+            print(claim(DLevel.WARN, tag).setContent(content).setThrowable(tr));
         }
     }
 
@@ -108,9 +434,41 @@ public class DLog {
         warn(tag, content, null);
     }
 
+    public void warn(String tag, @NonNull String format, Object arg) {
+        if (isLoggable(DLevel.WARN, tag)) {
+            print(claim(DLevel.WARN, tag).setFormat(format, 1, arg, null, null));
+        }
+    }
+
+    public void warn(String tag, @NonNull String format, Object arg1, Object arg2) {
+        if (isLoggable(DLevel.WARN, tag)) {
+            print(claim(DLevel.WARN, tag).setFormat(format, 2, arg1, arg2, null));
+        }
+    }
+
+    public void warn(String tag, @NonNull String format, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(DLevel.WARN, tag)) {
+            print(claim(DLevel.WARN, tag).setFormat(format, 3, arg1, arg2, arg3));
+        }
+    }
+
+    public void warn(String tag, @NonNull String format,
+                     Object arg1, Object arg2, Object arg3, Object... args) {
+        if (isLoggable(DLevel.WARN, tag)) {
+            print(claim(DLevel.WARN, tag)
+                    .setFormat(format, MessageFormatter.toArray(arg1, arg2, arg3, args)));
+        }
+    }
+
+    public void warn(String tag, @NonNull DSupplier<String> supplier) {
+        if (isLoggable(DLevel.WARN, tag)) {
+            print(claim(DLevel.WARN, tag).setSupplier(supplier));
+        }
+    }
+
     public void error(String tag, String content, Throwable tr) {
-        if (mSetting.checkStore(DLevel.ERROR, tag)) {
-            print(DLevel.ERROR, tag, content, tr);
+        if (isLoggable(DLevel.ERROR, tag)) {
+            print(claim(DLevel.ERROR, tag).setContent(content).setThrowable(tr));
         }
     }
 
@@ -118,9 +476,41 @@ public class DLog {
         error(tag, content, null);
     }
 
+    public void error(String tag, @NonNull String format, Object arg) {
+        if (isLoggable(DLevel.ERROR, tag)) {
+            print(claim(DLevel.ERROR, tag).setFormat(format, 1, arg, null, null));
+        }
+    }
+
+    public void error(String tag, @NonNull String format, Object arg1, Object arg2) {
+        if (isLoggable(DLevel.ERROR, tag)) {
+            print(claim(DLevel.ERROR, tag).setFormat(format, 2, arg1, arg2, null));
+        }
+    }
+
+    public void error(String tag, @NonNull String format, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(DLevel.ERROR, tag)) {
+            print(claim(DLevel.ERROR, tag).setFormat(format, 3, arg1, arg2, arg3));
+        }
+    }
+
+    public void error(String tag, @NonNull String format,
+                      Object arg1, Object arg2, Object arg3, Object... args) {
+        if (isLoggable(DLevel.ERROR, tag)) {
+            print(claim(DLevel.ERROR, tag)
+                    .setFormat(format, MessageFormatter.toArray(arg1, arg2, arg3, args)));
+        }
+    }
+
+    public void error(String tag, @NonNull DSupplier<String> supplier) {
+        if (isLoggable(DLevel.ERROR, tag)) {
+            print(claim(DLevel.ERROR, tag).setSupplier(supplier));
+        }
+    }
+
     public void azzert(String tag, String content, Throwable tr) {
-        if (mSetting.checkStore(DLevel.WTF, tag)) {
-            print(DLevel.WTF, tag, content, tr);
+        if (isLoggable(DLevel.WTF, tag)) {
+            print(claim(DLevel.WTF, tag).setContent(content).setThrowable(tr));
         }
     }
 
@@ -128,18 +518,149 @@ public class DLog {
         azzert(tag, content, null);
     }
 
+    public void azzert(String tag, @NonNull String format, Object arg) {
+        if (isLoggable(DLevel.WTF, tag)) {
+            print(claim(DLevel.WTF, tag).setFormat(format, 1, arg, null, null));
+        }
+    }
+
+    public void azzert(String tag, @NonNull String format, Object arg1, Object arg2) {
+        if (isLoggable(DLevel.WTF, tag)) {
+            print(claim(DLevel.WTF, tag).setFormat(format, 2, arg1, arg2, null));
+        }
+    }
+
+    public void azzert(String tag, @NonNull String format, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(DLevel.WTF, tag)) {
+            print(claim(DLevel.WTF, tag).setFormat(format, 3, arg1, arg2, arg3));
+        }
+    }
+
+    public void azzert(String tag, @NonNull String format,
+                       Object arg1, Object arg2, Object arg3, Object... args) {
+        if (isLoggable(DLevel.WTF, tag)) {
+            print(claim(DLevel.WTF, tag)
+                    .setFormat(format, MessageFormatter.toArray(arg1, arg2, arg3, args)));
+        }
+    }
+
+    public void azzert(String tag, @NonNull DSupplier<String> supplier) {
+        if (isLoggable(DLevel.WTF, tag)) {
+            print(claim(DLevel.WTF, tag).setSupplier(supplier));
+        }
+    }
+
 
     /**
-     * 写入到文件同时输入到控制台
+     * 判断文件、控制台或其它输出目标是否需要输出该日志
      *
      * @param level 消息等级
      * @param tag   标签
-     * @param msg   需要写入的到日志的内容
+     * @return true - 至少有一个需要输出
      */
-    private void print(@NonNull DLevel level, String tag, String msg, Throwable tr) {
-        String message = null == tr ? msg : msg + lineSeparator + Log.getStackTraceString(tr);
+    boolean isLoggable(@NonNull DLevel level, String tag) {
+        return isWanted(level, tag) && acquire(level, tag);
+    }
 
-        mPrinter.print(level, tag, message);
+    /**
+     * 判断文件、控制台或其它输出目标是否需要该日志，不考虑限流
+     */
+    private boolean isWanted(@NonNull DLevel level, String tag) {
+        if (mSetting.checkStore(level, tag) || mConsole.isLoggable(level, tag)) {
+            return true;
+        }
+        for (PrinterSink sink : mSinks) {
+            if (sink.isLoggable(level, tag)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 按DSetting中的限流和采样规则判断，抑制窗口结束时先输出汇总
+     *
+     * @return false - 被抑制
+     */
+    private boolean acquire(@NonNull DLevel level, String tag) {
+        long suppressed = mSetting.getRateLimiter().acquire(level, tag);
+        if (suppressed < 0) return false;
+        if (suppressed > 0) {
+            reportSuppressed(String.valueOf(tag), suppressed);
+        }
+        return true;
+    }
+
+    private void reportSuppressed(@NonNull String tag, long suppressed) {
+        if (isWanted(DLevel.WARN, tag)) {
+            print(claim(DLevel.WARN, tag).setContent("suppressed " + suppressed + " events from " + tag));
+        }
+    }
+
+    /**
+     * 获取待填充的LogEvent：只需要写入文件时直接从队列中占用，填充后立即发布;
+     * 控制台或其它输出目标需要消息时返回当前线程复用的LogEvent(不加锁)，在{@link #print(LogEvent)}中先生成消息再占用队列，
+     * 生成消息(supplier、toString、异常堆栈)期间不占用队列槽位
+     *
+     * @param level 消息等级
+     * @param tag   标签
+     * @return LogEvent，填充后必须调用{@link #print(LogEvent)}发布
+     */
+    private LogEvent claim(@NonNull DLevel level, String tag) {
+        LogEvent event = !isMessageNeeded(level, tag) && mSetting.checkStore(level, tag) ? mWriter.claim(level) : null;
+        return null == event ? LogEvent.obtainLocal(level, tag) : event.init(level, tag);
+    }
+
+    /**
+     * @return 控制台或其它输出目标是否需要该日志的消息
+     */
+    private boolean isMessageNeeded(@NonNull DLevel level, String tag) {
+        if (mConsole.isLoggable(level, tag)) return true;
+        for (PrinterSink sink : mSinks) {
+            if (sink.isLoggable(level, tag)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 发布到写文件线程，同时交给控制台和其它输出目标；消息只生成一次，写文件线程复用生成的结果.
+     * 队列中的LogEvent直接发布；线程复用的LogEvent先生成消息，需要写入文件时再占用队列，
+     * 复制后立即发布，控制台等的输出在发布之后进行
+     *
+     * @param event 通过claim获取的LogEvent
+     */
+    private void print(@NonNull LogEvent event) {
+        if (event.isRingEvent()) {
+            mWriter.publish(event);
+            return;
+        }
+        DLevel level = event.getLevel();
+        String tag = event.getTag();
+        PrinterSink[] sinks = mSinks;
+        boolean isConsole;
+        String message;
+        try {
+            // 只写文件但队列已满被丢弃时，不再生成消息和重复占用
+            if (!isMessageNeeded(level, tag)) return;
+            isConsole = mConsole.isLoggable(level, tag);
+            message = event.getMessageString();
+            LogEvent slot = mSetting.checkStore(level, tag) ? mWriter.claim(level) : null;
+            if (null != slot) {
+                mWriter.publish(slot.copyFrom(event));
+            }
+        } finally {
+            event.recycle();
+        }
+        if (isConsole) {
+            mConsole.print(level, tag, message);
+        }
+        for (PrinterSink sink : sinks) {
+            if (sink.isLoggable(level, tag)) {
+                try {
+                    sink.print(level, tag, message);
+                } catch (Throwable t) {
+                    Log.e(TAG, "print(...)#catch", t);
+                }
+            }
+        }
     }
 
 
@@ -3,7 +3,9 @@ package com.df.dlogger.logger;
 import android.support.annotation.NonNull;
 import android.text.TextUtils;
 
+import com.df.dlogger.constant.DFileFormat;
 import com.df.dlogger.constant.DLevel;
+import com.df.dlogger.constant.DOverflow;
 import com.df.dlogger.constant.DSegment;
 import com.df.dlogger.constant.DZoneOffset;
 import com.df.dlogger.util.SysUtils;
@@ -18,14 +20,21 @@ import java.util.regex.Pattern;
  */
 public class DSetting {
 
+    /** BINARY格式日志文件追加的后缀 */
+    public static final String BINARY_SUFFIX = ".bin";
+    /** JSON_LINES格式日志文件追加的后缀 */
+    public static final String JSON_LINES_SUFFIX = ".jsonl";
+    /** 带记录帧的日志文件追加的后缀 */
+    public static final String FRAMED_SUFFIX = ".framed";
+
     /** 是否需存储到本地 */
     private boolean isNeedStore;
     /** 需要保存或者显示的消息的等级 */
     private DLevel mLevel;
     /** 过滤正则表达式规则 */
     private String mPatternStr;
-    /** 正则表达式对象 */
-    private Pattern mPattern;
+    /** 由正则表达式生成的tag过滤器，规则变化时整体替换 */
+    private volatile TagFilter mTagFilter;
     /** 字符集. */
     private String mCharset;
     /** 时间格式. */
@@ -40,10 +49,42 @@ public class DSetting {
     private String mLogSuffix;
     /** 切片间隔，单位小时. */
     private DSegment mLogSegment;
+    /** 单个日志文件大小上限，单位字节，0表示不限制 */
+    private long mMaxFileSize;
+    /** 日志文件格式 */
+    private DFileFormat mFileFormat;
+    /** 每条记录加上同步标记、长度和CRC32C，损坏后可以用RecoveryScanner跳过 */
+    private boolean isFramed;
     /** 保留日志的天数 ,小于1则永远保留 */
     private int retainDays;
+    /** 日志文件总大小上限，单位字节，0表示不限制 */
+    private long mMaxTotalSize;
+    /** 日志文件个数上限，0表示不限制 */
+    private int mMaxFileCount;
+    /** 已关闭日志文件的gzip压缩等级，0表示不压缩 */
+    private int mCompressLevel;
     /** 产生日志文件时的初始化信息. */
     private String info;
+    /** 写文件线程每次最多合并写入的日志条数 */
+    private int mBatchSize;
+    /** 日志在写入文件前最长的等待时间，单位毫秒，0表示队列空了就写 */
+    private long mLingerMillis;
+    /** 日志先写入内存映射文件，进程被杀后下次启动时恢复 */
+    private boolean isMmapMode;
+    /** 内存映射文件的数据区大小，单位字节 */
+    private int mMmapSize;
+    /** 写文件队列满时的处理策略 */
+    private DOverflow mOverflow;
+    /** 写文件队列最多容纳的日志条数 */
+    private int mQueueCapacity;
+    /** 写文件队列中日志的估算内存上限，单位字节，0表示不限制 */
+    private long mQueueBytes;
+    /** DOverflow.SAMPLE时每N条保留1条 */
+    private int mSampleRate;
+    /** 按标签和等级的限流和采样 */
+    private final RateLimiter mRateLimiter = new RateLimiter();
+    /** 每次修改后加1，供写文件线程判断缓存的设定是否过期 */
+    private volatile int mVersion;
 
     /**
      * 保存'全部日志','不设置正则过滤条件'<br>
@@ -53,7 +94,7 @@ public class DSetting {
         isNeedStore = true;
         mLevel = DLevel.ALL;
         mPatternStr = "";
-        mPattern = null;
+        mTagFilter = null;
 
         mCharset = "UTF-8";
         mTimeFormat = "yyyy-MM-dd HH:mm:ss.SSS";
@@ -62,8 +103,22 @@ public class DSetting {
         mLogPrefix = "";
         mLogSuffix = ".log";
         mLogSegment = DSegment.TWENTY_FOUR_HOURS;
+        mMaxFileSize = 0;
+        mFileFormat = DFileFormat.TEXT;
+        isFramed = false;
         retainDays = 7;
+        mMaxTotalSize = 0;
+        mMaxFileCount = 0;
+        mCompressLevel = 0;
         info = SysUtils.genInfo();
+        mBatchSize = 256;
+        mLingerMillis = 0;
+        isMmapMode = false;
+        mMmapSize = 256 * 1024;
+        mOverflow = DOverflow.BLOCK;
+        mQueueCapacity = 1024;
+        mQueueBytes = 0;
+        mSampleRate = 10;
     }
 
     /**
@@ -81,6 +136,7 @@ public class DSetting {
      */
     public DSetting setInfo(String info) {
         this.info = info;
+        changed();
         return this;
     }
 
@@ -92,6 +148,7 @@ public class DSetting {
      */
     public DSetting addInfo(String info) {
         this.info = SysUtils.genInfo() + SysUtils.getLineSeparator() + info;
+        changed();
         return this;
     }
 
@@ -112,6 +169,7 @@ public class DSetting {
      */
     public DSetting setCharset(@NonNull String charset) {
         mCharset = charset;
+        changed();
         return this;
     }
 
@@ -132,6 +190,7 @@ public class DSetting {
      */
     public DSetting setTimeFormat(@NonNull String timeFormat) {
         mTimeFormat = timeFormat;
+        changed();
         return this;
     }
 
@@ -152,6 +211,7 @@ public class DSetting {
      */
     public DSetting setZoneOffset(@NonNull DZoneOffset zoneOffset) {
         mZoneOffset = zoneOffset;
+        changed();
         return this;
     }
 
@@ -172,6 +232,7 @@ public class DSetting {
      */
     public DSetting setLogDir(@NonNull String logDir) {
         mLogDir = logDir;
+        changed();
         return this;
     }
 
@@ -192,6 +253,7 @@ public class DSetting {
      */
     public DSetting setLogPrefix(@NonNull String logPrefix) {
         mLogPrefix = logPrefix;
+        changed();
         return this;
     }
 
@@ -212,6 +274,28 @@ public class DSetting {
      */
     public DSetting setLogSegment(@NonNull DSegment logSegment) {
         mLogSegment = logSegment;
+        changed();
+        return this;
+    }
+
+    /**
+     * 获取单个日志文件大小上限
+     *
+     * @return 字节，0表示不限制
+     */
+    public long getMaxFileSize() {
+        return mMaxFileSize;
+    }
+
+    /**
+     * 设定单个日志文件大小上限，同一切片内写满后切换到name.1.log、name.2.log...
+     *
+     * @param maxFileSize 字节，0表示不限制
+     * @return DSetting
+     */
+    public DSetting setMaxFileSize(long maxFileSize) {
+        mMaxFileSize = Math.max(0, maxFileSize);
+        changed();
         return this;
     }
 
@@ -232,9 +316,124 @@ public class DSetting {
      */
     public DSetting setRetainDays(int retainDays) {
         this.retainDays = retainDays;
+        changed();
+        return this;
+    }
+
+    /**
+     * 获取日志文件总大小上限
+     *
+     * @return 字节，0表示不限制
+     */
+    public long getMaxTotalSize() {
+        return mMaxTotalSize;
+    }
+
+    /**
+     * 设定日志文件总大小上限，超出时从最早的文件开始删除
+     *
+     * @param maxTotalSize 字节，0表示不限制
+     * @return DSetting
+     */
+    public DSetting setMaxTotalSize(long maxTotalSize) {
+        mMaxTotalSize = Math.max(0, maxTotalSize);
+        changed();
+        return this;
+    }
+
+    /**
+     * 获取日志文件个数上限
+     *
+     * @return 个数，0表示不限制
+     */
+    public int getMaxFileCount() {
+        return mMaxFileCount;
+    }
+
+    /**
+     * 设定日志文件个数上限，超出时从最早的文件开始删除
+     *
+     * @param maxFileCount 个数，0表示不限制
+     * @return DSetting
+     */
+    public DSetting setMaxFileCount(int maxFileCount) {
+        mMaxFileCount = Math.max(0, maxFileCount);
+        changed();
+        return this;
+    }
+
+    /**
+     * 获取已关闭日志文件的压缩等级
+     *
+     * @return 1-9，0表示不压缩
+     */
+    public int getCompressLevel() {
+        return mCompressLevel;
+    }
+
+    /**
+     * 设定已关闭日志文件的压缩等级，切换文件后在后台线程压缩为.gz，保留天数和配额按压缩后的文件计算
+     *
+     * @param compressLevel 1(最快)-9(最小)，0表示不压缩
+     * @return DSetting
+     */
+    public DSetting setCompressLevel(int compressLevel) {
+        mCompressLevel = Math.max(0, Math.min(9, compressLevel));
+        changed();
         return this;
     }
 
+    /**
+     * @return 日志文件格式
+     */
+    public DFileFormat getFileFormat() {
+        return mFileFormat;
+    }
+
+    /**
+     * 设定日志文件格式，BINARY格式的文件后缀为logSuffix加上'.bin'，JSON_LINES格式加上'.jsonl'
+     *
+     * @param fileFormat 日志文件格式
+     * @return DSetting
+     */
+    public DSetting setFileFormat(@NonNull DFileFormat fileFormat) {
+        mFileFormat = fileFormat;
+        changed();
+        return this;
+    }
+
+    /**
+     * @return 是否为每条记录加上记录帧
+     */
+    public boolean isFramed() {
+        return isFramed;
+    }
+
+    /**
+     * 设定是否为每条记录加上记录帧，文件后缀再追加'.framed'，
+     * 需要用{@link com.df.dlogger.util.RecoveryScanner}读取
+     *
+     * @param framed 是否加上记录帧
+     * @return DSetting
+     */
+    public DSetting setFramed(boolean framed) {
+        isFramed = framed;
+        changed();
+        return this;
+    }
+
+    /**
+     * 获取实际的日志文件后缀，BINARY格式为logSuffix加上'.bin'，JSON_LINES格式加上'.jsonl'，
+     * 带记录帧时再加上'.framed'
+     *
+     * @return 文件后缀
+     */
+    public String getFileSuffix() {
+        String suffix = DFileFormat.BINARY == mFileFormat ? mLogSuffix + BINARY_SUFFIX
+                : DFileFormat.JSON_LINES == mFileFormat ? mLogSuffix + JSON_LINES_SUFFIX : mLogSuffix;
+        return isFramed ? suffix + FRAMED_SUFFIX : suffix;
+    }
+
     /**
      * 获取日志文件的后缀名
      *
@@ -252,9 +451,216 @@ public class DSetting {
      */
     public DSetting setLogSuffix(String logSuffix) {
         mLogSuffix = logSuffix;
+        changed();
+        return this;
+    }
+
+    /**
+     * 获取每次最多合并写入的日志条数
+     *
+     * @return 条数
+     */
+    public int getBatchSize() {
+        return mBatchSize;
+    }
+
+    /**
+     * 设定每次最多合并写入的日志条数，写文件线程会把队列中的日志合并为一次写入
+     *
+     * @param batchSize 条数，至少为1
+     * @return DSetting
+     */
+    public DSetting setBatchSize(int batchSize) {
+        mBatchSize = Math.max(1, batchSize);
+        changed();
+        return this;
+    }
+
+    /**
+     * 获取日志写入文件前最长的等待时间
+     *
+     * @return 毫秒
+     */
+    public long getLingerMillis() {
+        return mLingerMillis;
+    }
+
+    /**
+     * 设定日志写入文件前最长的等待时间，等待期间凑够batchSize条才会提前写入;
+     * 增大可以减少唤醒和写入次数，但进程被杀时会丢失更多日志
+     *
+     * @param lingerMillis 毫秒，0表示队列空了就写
+     * @return DSetting
+     */
+    public DSetting setLingerMillis(long lingerMillis) {
+        mLingerMillis = Math.max(0, lingerMillis);
+        changed();
+        return this;
+    }
+
+    /**
+     * @return 是否先写入内存映射文件
+     */
+    public boolean isMmapMode() {
+        return isMmapMode;
+    }
+
+    /**
+     * 设定是否先写入内存映射文件，日志目录下的映射文件写满一半、切换文件时才写入日志文件;
+     * 进程被杀时已写入映射文件的日志不会丢失，下次启动时追加到原来的日志文件中
+     *
+     * @param mmapMode 是否开启
+     * @return DSetting
+     */
+    public DSetting setMmapMode(boolean mmapMode) {
+        isMmapMode = mmapMode;
+        changed();
+        return this;
+    }
+
+    /**
+     * @return 内存映射文件的数据区大小
+     */
+    public int getMmapSize() {
+        return mMmapSize;
+    }
+
+    /**
+     * 设定内存映射文件的数据区大小
+     *
+     * @param mmapSize 字节，至少为64K
+     * @return DSetting
+     */
+    public DSetting setMmapSize(int mmapSize) {
+        mMmapSize = Math.max(64 * 1024, mmapSize);
+        changed();
+        return this;
+    }
+
+    /**
+     * @return 写文件队列满时的处理策略
+     */
+    public DOverflow getOverflow() {
+        return mOverflow;
+    }
+
+    /**
+     * 设定写文件队列满时的处理策略，丢弃的条数会在队列清空后以一条WARN日志写入文件
+     *
+     * @param overflow 处理策略
+     * @return DSetting
+     */
+    public DSetting setOverflow(@NonNull DOverflow overflow) {
+        mOverflow = overflow;
+        changed();
+        return this;
+    }
+
+    /**
+     * @return 写文件队列最多容纳的日志条数
+     */
+    public int getQueueCapacity() {
+        return mQueueCapacity;
+    }
+
+    /**
+     * 设定写文件队列最多容纳的日志条数
+     *
+     * @param queueCapacity 条数，范围为[1, 1024]
+     * @return DSetting
+     */
+    public DSetting setQueueCapacity(int queueCapacity) {
+        mQueueCapacity = Math.max(1, queueCapacity);
+        changed();
+        return this;
+    }
+
+    /**
+     * @return 写文件队列中日志的估算内存上限
+     */
+    public long getQueueBytes() {
+        return mQueueBytes;
+    }
+
+    /**
+     * 设定写文件队列中日志的估算内存上限，按消息、标签和参数的长度估算
+     *
+     * @param queueBytes 字节，0表示只按条数限制
+     * @return DSetting
+     */
+    public DSetting setQueueBytes(long queueBytes) {
+        mQueueBytes = Math.max(0, queueBytes);
+        changed();
         return this;
     }
 
+    /**
+     * @return DOverflow.SAMPLE时每N条保留1条
+     */
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    /**
+     * 设定DOverflow.SAMPLE时每N条保留1条
+     *
+     * @param sampleRate N，至少为1
+     * @return DSetting
+     */
+    public DSetting setSampleRate(int sampleRate) {
+        mSampleRate = Math.max(1, sampleRate);
+        changed();
+        return this;
+    }
+
+    /**
+     * 添加限流规则，对控制台、文件和其它输出目标都生效，在生成消息之前判断.
+     * <p>
+     * 每个标签单独计数(ULog的标签包含调用位置，即按调用点计数)，平均每秒最多perSecond条，
+     * 最多连续burst条；被抑制的条数之后以WARN日志"suppressed N events from tag"汇总，同一标签最多每秒一条.
+     * 多条规则按添加顺序匹配，第一条匹配的规则生效.
+     *
+     * @param pattern   标签正则，见{@link TagFilter#compile(String)}；为null或空时匹配全部标签
+     * @param level     不高于该等级的日志生效，如DEBUG则只限制VERBOSE和DEBUG；ALL为全部等级
+     * @param perSecond 每秒允许的条数
+     * @param burst     允许连续的条数，至少为1
+     * @return DSetting
+     */
+    public DSetting addRateLimit(String pattern, @NonNull DLevel level, double perSecond, int burst) {
+        mRateLimiter.add(RateLimiter.Rule.limit(pattern, level, perSecond, burst));
+        changed();
+        return this;
+    }
+
+    /**
+     * 添加采样规则，每个标签每N条保留1条，汇总和匹配方式与{@link #addRateLimit}相同
+     *
+     * @param pattern 标签正则，为null或空时匹配全部标签
+     * @param level   不高于该等级的日志生效，ALL为全部等级
+     * @param n       每N条保留1条
+     * @return DSetting
+     */
+    public DSetting addSampling(String pattern, @NonNull DLevel level, int n) {
+        mRateLimiter.add(RateLimiter.Rule.sample(pattern, level, n));
+        changed();
+        return this;
+    }
+
+    /**
+     * 清除全部限流和采样规则
+     *
+     * @return DSetting
+     */
+    public DSetting clearRateLimits() {
+        mRateLimiter.clear();
+        changed();
+        return this;
+    }
+
+    RateLimiter getRateLimiter() {
+        return mRateLimiter;
+    }
+
     ///////////////////////////////////////////////////////////////////////////
     // 
     ///////////////////////////////////////////////////////////////////////////
@@ -267,6 +673,8 @@ public class DSetting {
     public DSetting setLevel(@NonNull DLevel level) {
         isNeedStore = DLevel.NONE != level;
         mLevel = level;
+        DLog.onSettingChanged(this);
+        changed();
         return this;
     }
 
@@ -276,6 +684,8 @@ public class DSetting {
 
     public DSetting setNeedStore(boolean needStore) {
         isNeedStore = needStore;
+        DLog.onSettingChanged(this);
+        changed();
         return this;
     }
 
@@ -286,16 +696,18 @@ public class DSetting {
     public DSetting setPattern(@NonNull String pattern) {
         mPatternStr = pattern;
         if (!TextUtils.isEmpty(pattern)) {
-            mPattern = Pattern.compile(pattern);
+            mTagFilter = TagFilter.compile(pattern);
         } else {
-            mPattern = null;
+            mTagFilter = null;
         }
+        changed();
         return this;
     }
 
 
     public DSetting setPattern(Pattern pattern) {
-        mPattern = pattern;
+        mTagFilter = null == pattern ? null : TagFilter.compile(pattern);
+        changed();
         return this;
     }
 
@@ -305,9 +717,22 @@ public class DSetting {
 
     public DSetting setPatternStr(String patternStr) {
         mPatternStr = patternStr;
+        changed();
         return this;
     }
 
+    /**
+     * 获取设定的版本，任何set方法调用后都会改变
+     *
+     * @return 版本
+     */
+    public int getVersion() {
+        return mVersion;
+    }
+
+    private void changed() {
+        mVersion++;
+    }
 
     /**
      * 判断是否需要保存日志到文件
@@ -317,8 +742,11 @@ public class DSetting {
      * @return 需要保存且符合日志等级要求，且符合正则过滤条件 则返回true，否则false;
      */
     public boolean checkStore(@NonNull DLevel level, String tag) {
-        return isNeedStore && mLevel.isEnable(level)
-                && (null == mPattern || (!TextUtils.isEmpty(tag) && mPattern.matcher(tag).find()));
+        if (!isNeedStore || !mLevel.isEnable(level)) {
+            return false;
+        }
+        TagFilter filter = mTagFilter;
+        return null == filter || (!TextUtils.isEmpty(tag) && filter.accept(tag));
     }
 
 }
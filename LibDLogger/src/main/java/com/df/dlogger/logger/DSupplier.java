@@ -0,0 +1,16 @@
+package com.df.dlogger.logger;
+
+/**
+ * 延迟生成日志内容，只有日志需要输出时才会调用{@link #get()}.
+ * <p>
+ * minSdkVersion低于24时无法使用java.util.function.Supplier，所以单独定义.
+ *
+ * @param <T> 内容类型
+ */
+public interface DSupplier<T> {
+
+    /**
+     * @return 日志内容
+     */
+    T get();
+}
@@ -0,0 +1,202 @@
+package com.df.dlogger.logger;
+
+import android.support.annotation.NonNull;
+
+import com.df.dlogger.constant.DLevel;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 预分配LogEvent的环形队列，多线程写入、写文件线程批量读取，全程无锁.
+ * <p>
+ * 每个槽位有一个序号：等于pos表示可写，等于pos+1表示已发布可读，读完后设为pos+capacity留给下一圈.
+ * 写入分为{@link #claim}和{@link #publish}两步，中间直接填充槽位里的LogEvent.
+ * 读取位置用CAS推进，写入线程也可以通过{@link #dropOldest()}丢弃最早的日志.
+ */
+final class EventRing {
+
+    /**
+     * 处理读取到的日志
+     */
+    interface EventHandler {
+        /**
+         * @param event      日志，返回后即被清空复用
+         * @param endOfBatch 是否为本批次最后一条
+         */
+        void onEvent(@NonNull LogEvent event, boolean endOfBatch);
+
+        /**
+         * 把之前处理的日志一次写入
+         */
+        void onFlush();
+
+        /**
+         * 把之前处理的日志写入并落盘，如内存映射缓冲中的内容，默认等同于{@link #onFlush()}
+         */
+        default void onSync() {
+            onFlush();
+        }
+    }
+
+    private final LogEvent[] mEvents;
+    private final AtomicLongArray mSequences;
+    private final int mMask;
+
+    /** 下一个可写位置 */
+    private final AtomicLong mTail = new AtomicLong();
+    /** 下一个可读位置 */
+    private final AtomicLong mHead = new AtomicLong();
+    /** 队列中日志的估算内存 */
+    private final AtomicLong mBytes = new AtomicLong();
+
+    /**
+     * @param capacity 容量，向上取整为2的幂
+     */
+    EventRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        mEvents = new LogEvent[size];
+        mSequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            mEvents[i] = LogEvent.newRingEvent();
+            mSequences.set(i, i);
+        }
+        mMask = size - 1;
+    }
+
+    int capacity() {
+        return mEvents.length;
+    }
+
+    /**
+     * 尝试占用一个槽位.
+     *
+     * @return 槽位里的LogEvent，队列已满返回null
+     */
+    LogEvent tryClaim() {
+        while (true) {
+            long pos = mTail.get();
+            int index = (int) (pos & mMask);
+            long diff = mSequences.get(index) - pos;
+            if (0 == diff) {
+                if (mTail.compareAndSet(pos, pos + 1)) {
+                    LogEvent event = mEvents[index];
+                    event.mSequence = pos;
+                    return event;
+                }
+            } else if (diff < 0) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 发布已填充好的槽位，之后写入线程不能再访问该LogEvent.
+     *
+     * @param event 通过claim获取的LogEvent
+     */
+    void publish(@NonNull LogEvent event) {
+        if (0 != event.mEstimate) {
+            mBytes.addAndGet(event.mEstimate);
+        }
+        long pos = event.mSequence;
+        mSequences.set((int) (pos & mMask), pos + 1);
+    }
+
+    /**
+     * @return 当前没有可读的日志
+     */
+    boolean isEmpty() {
+        long pos = mHead.get();
+        return mSequences.get((int) (pos & mMask)) != pos + 1;
+    }
+
+    /**
+     * @return 队列中大约的日志条数，包括已占用未发布的
+     */
+    int size() {
+        return (int) Math.max(0, mTail.get() - mHead.get());
+    }
+
+    /**
+     * @return 已占用的槽位总数，之后占用的日志位置都不小于该值
+     */
+    long tail() {
+        return mTail.get();
+    }
+
+    /**
+     * @return 已读取或丢弃的日志总数
+     */
+    long head() {
+        return mHead.get();
+    }
+
+    /**
+     * @return 队列中已发布日志的估算内存，只包含发布时设置了估算值的
+     */
+    long bytes() {
+        return mBytes.get();
+    }
+
+    /**
+     * 由写入线程丢弃最早的一条日志，与写文件线程竞争同一个读取位置.
+     *
+     * @return 被丢弃日志的等级，最早的槽位还未发布时返回null
+     */
+    DLevel dropOldest() {
+        while (true) {
+            long pos = mHead.get();
+            int index = (int) (pos & mMask);
+            if (mSequences.get(index) != pos + 1) {
+                return null;
+            }
+            if (mHead.compareAndSet(pos, pos + 1)) {
+                LogEvent event = mEvents[index];
+                DLevel level = event.getLevel();
+                release(event, index, pos);
+                return level;
+            }
+        }
+    }
+
+    private void release(LogEvent event, int index, long pos) {
+        if (0 != event.mEstimate) {
+            mBytes.addAndGet(-event.mEstimate);
+            event.mEstimate = 0;
+        }
+        event.recycle();
+        mSequences.lazySet(index, pos + mEvents.length);
+    }
+
+    /**
+     * 批量读取已发布的日志，遇到未发布的槽位即停止，保证顺序.
+     *
+     * @param handler  处理者
+     * @param maxBatch 最多读取的条数
+     * @return 读取的条数
+     */
+    int drain(@NonNull EventHandler handler, int maxBatch) {
+        int count = 0;
+        while (count < maxBatch) {
+            long pos = mHead.get();
+            int index = (int) (pos & mMask);
+            if (mSequences.get(index) != pos + 1) {
+                break;
+            }
+            if (!mHead.compareAndSet(pos, pos + 1)) {
+                continue;
+            }
+            LogEvent event = mEvents[index];
+            count++;
+            boolean endOfBatch = count >= maxBatch
+                    || mSequences.get((int) ((pos + 1) & mMask)) != pos + 2;
+            try {
+                handler.onEvent(event, endOfBatch);
+            } finally {
+                release(event, index, pos);
+            }
+        }
+        return count;
+    }
+}
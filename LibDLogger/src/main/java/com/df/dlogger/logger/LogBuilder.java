@@ -0,0 +1,153 @@
+package com.df.dlogger.logger;
+
+import android.support.annotation.NonNull;
+
+import com.df.dlogger.constant.DLevel;
+
+/**
+ * 结构化日志，通过{@link DLog#at(DLevel)}获取，以{@link #log(String)}结束:
+ * <pre>
+ * DLog.getInstance().at(DLevel.INFO).tag(TAG).kv("userId", 42L).kv("latencyMs", 3.2).log("login");
+ * </pre>
+ * 每个线程复用同一个LogBuilder，kv按基本类型重载，不会装箱；等级或标签不需要输出时返回空实现，
+ * 之后的调用什么也不做. 同名字段以最后一次为准. 字段只在需要输出时才复制到LogEvent，
+ * JSON_LINES格式的文件中保存在fields对象中，其它输出中以" key=value"的形式附加在消息之后.
+ * <p>
+ * 获取后必须在同一线程中调用log结束，不能保存后再使用.
+ */
+public class LogBuilder {
+
+    /** 不需要输出时返回的空实现 */
+    static final LogBuilder NOOP = new LogBuilder(null) {
+        @Override
+        public LogBuilder tag(String tag) {
+            return this;
+        }
+
+        @Override
+        public LogBuilder kv(@NonNull String key, long value) {
+            return this;
+        }
+
+        @Override
+        public LogBuilder kv(@NonNull String key, double value) {
+            return this;
+        }
+
+        @Override
+        public LogBuilder kv(@NonNull String key, boolean value) {
+            return this;
+        }
+
+        @Override
+        public LogBuilder kv(@NonNull String key, String value) {
+            return this;
+        }
+
+        @Override
+        public LogBuilder throwable(Throwable throwable) {
+            return this;
+        }
+
+        @Override
+        public void log(String message) {
+        }
+    };
+
+    private final DLog mOwner;
+    private DLevel mLevel;
+    private String mTag;
+    private Throwable mThrowable;
+    private final LogFields mFields = new LogFields();
+    /** 是否在获取之后还没有调用log，嵌套使用时不能复用 */
+    private boolean isInUse;
+    /** 是否已在tag中判断过，避免限流重复计数 */
+    private boolean isChecked;
+
+    LogBuilder(DLog owner) {
+        mOwner = owner;
+    }
+
+    /**
+     * 获取后开始一条新日志
+     */
+    LogBuilder begin(@NonNull DLevel level) {
+        mLevel = level;
+        mTag = null;
+        mThrowable = null;
+        mFields.clear();
+        isInUse = true;
+        isChecked = false;
+        return this;
+    }
+
+    boolean isInUse() {
+        return isInUse;
+    }
+
+    /**
+     * 设置标签，该等级和标签不需要输出时之后的调用都不再处理
+     *
+     * @param tag 标签
+     * @return LogBuilder
+     */
+    public LogBuilder tag(String tag) {
+        if (!mOwner.isLoggable(mLevel, tag)) {
+            end();
+            return NOOP;
+        }
+        mTag = tag;
+        isChecked = true;
+        return this;
+    }
+
+    public LogBuilder kv(@NonNull String key, long value) {
+        mFields.add(key, value);
+        return this;
+    }
+
+    public LogBuilder kv(@NonNull String key, double value) {
+        mFields.add(key, value);
+        return this;
+    }
+
+    public LogBuilder kv(@NonNull String key, boolean value) {
+        mFields.add(key, value);
+        return this;
+    }
+
+    public LogBuilder kv(@NonNull String key, String value) {
+        mFields.add(key, value);
+        return this;
+    }
+
+    /**
+     * @param throwable 异常，堆栈附加在消息之后
+     * @return LogBuilder
+     */
+    public LogBuilder throwable(Throwable throwable) {
+        mThrowable = throwable;
+        return this;
+    }
+
+    /**
+     * 输出日志，之后不能再使用
+     *
+     * @param message 消息
+     */
+    public void log(String message) {
+        try {
+            mOwner.log(mLevel, mTag, message, mThrowable, mFields, isChecked);
+        } finally {
+            end();
+        }
+    }
+
+    private void end() {
+        mTag = null;
+        mThrowable = null;
+        mFields.clear();
+        isInUse = false;
+        isChecked = false;
+    }
+}
@@ -0,0 +1,365 @@
+package com.df.dlogger.logger;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.df.dlogger.constant.DLevel;
+import com.df.dlogger.util.MessageFormatter;
+import com.df.dlogger.util.SysUtils;
+
+/**
+ * 一条日志，从DLog一直传递到Printer，使用{@link #obtain}获取，用完调用{@link #recycle()}回收复用.
+ * <p>
+ * 格式化参数和DSupplier会原样保存，直到第一次调用{@link #getMessage()}才生成消息，
+ * 因此参数对象在日志输出前不应被修改.
+ */
+public final class LogEvent {
+
+    /** 行分割符号 */
+    private static final String LINE_SEPARATOR = SysUtils.getLineSeparator();
+
+    /** 复用池上限 */
+    private static final int MAX_POOL_SIZE = 64;
+    /** 复用的StringBuilder超过该容量后重建，避免长期持有大对象 */
+    private static final int MAX_BUILDER_CAPACITY = 16 * 1024;
+
+    private static final Object sPoolSync = new Object();
+    private static LogEvent sPool;
+    private static int sPoolSize = 0;
+
+    /** 每个线程复用的LogEvent，调用线程生成消息时使用，不需要加锁 */
+    private static final ThreadLocal<LogEvent> sLocal = new ThreadLocal<LogEvent>() {
+        @Override
+        protected LogEvent initialValue() {
+            LogEvent event = new LogEvent();
+            event.isLocal = true;
+            return event;
+        }
+    };
+
+    private LogEvent next;
+    /** 是否来自复用池，EventRing中的LogEvent回收时只清空不入池 */
+    private boolean isPooled;
+    /** 是否为线程复用的LogEvent，回收时只清空 */
+    private boolean isLocal;
+    /** 线程复用的LogEvent是否在获取之后还没有回收，生成消息时嵌套输出日志不能复用 */
+    private boolean isInUse;
+    /** 在EventRing中的位置 */
+    long mSequence;
+    /** 在EventRing中计入的估算内存，0表示未计入 */
+    int mEstimate;
+
+    private DLevel mLevel;
+    private String mTag;
+    private long mTimeMillis;
+    private long mThreadId;
+    private Throwable mThrowable;
+
+    /** 直接给出的消息 */
+    private String mContent;
+    /** 格式化消息，参数个数小于0时表示使用mArgs */
+    private String mFormat;
+    private int mArgCount;
+    private Object mArg1;
+    private Object mArg2;
+    private Object mArg3;
+    private Object[] mArgs;
+    private DSupplier<String> mSupplier;
+    /** 结构化日志的字段 */
+    private final LogFields mFields = new LogFields();
+
+    /** 生成后的消息 */
+    private StringBuilder mMessage = new StringBuilder(128);
+    private boolean isRendered;
+    /** 供Printer装饰整行内容使用 */
+    private StringBuilder mText = new StringBuilder(256);
+
+    private LogEvent() {}
+
+    /**
+     * 从复用池获取一条日志，时间戳和线程为调用时的值
+     *
+     * @param level 日志等级
+     * @param tag   日志标签
+     * @return LogEvent
+     */
+    public static LogEvent obtain(@NonNull DLevel level, String tag) {
+        LogEvent event = null;
+        synchronized (sPoolSync) {
+            if (null != sPool) {
+                event = sPool;
+                sPool = event.next;
+                event.next = null;
+                sPoolSize--;
+            }
+        }
+        if (null == event) {
+            event = new LogEvent();
+            event.isPooled = true;
+        }
+        return event.init(level, tag);
+    }
+
+    /**
+     * 获取当前线程复用的LogEvent，不需要加锁；已在使用中(生成消息时嵌套输出日志)时从复用池获取.
+     * 必须在同一线程中回收
+     *
+     * @param level 日志等级
+     * @param tag   日志标签
+     * @return LogEvent
+     */
+    static LogEvent obtainLocal(@NonNull DLevel level, String tag) {
+        LogEvent event = sLocal.get();
+        if (event.isInUse) {
+            return obtain(level, tag);
+        }
+        event.isInUse = true;
+        return event.init(level, tag);
+    }
+
+    /**
+     * 创建EventRing中的LogEvent，回收时不进入复用池
+     */
+    static LogEvent newRingEvent() {
+        return new LogEvent();
+    }
+
+    /**
+     * @return 是否为EventRing中的LogEvent
+     */
+    boolean isRingEvent() {
+        return !isPooled && !isLocal;
+    }
+
+    /**
+     * 估算这条日志在队列中占用的内存，按UTF-16计算消息、标签的长度，每个参数按16个字符计算
+     *
+     * @return 字节数
+     */
+    int estimateSize() {
+        int chars = null == mTag ? 0 : mTag.length();
+        if (null != mContent) {
+            chars += mContent.length();
+        }
+        if (null != mFormat) {
+            chars += mFormat.length() + 16 * (mArgCount >= 0 ? mArgCount : null == mArgs ? 0 : mArgs.length);
+        }
+        chars += mFields.estimateChars();
+        return 64 + 2 * chars + (null == mThrowable ? 0 : 512);
+    }
+
+    /**
+     * 初始化等级、标签以及当前的时间和线程
+     */
+    LogEvent init(@NonNull DLevel level, String tag) {
+        mLevel = level;
+        mTag = tag;
+        mTimeMillis = System.currentTimeMillis();
+        mThreadId = Thread.currentThread().getId();
+        return this;
+    }
+
+    /**
+     * 复制src的全部内容，包括已生成的消息，写文件线程不再重新生成
+     *
+     * @param src 已填充的LogEvent
+     * @return this
+     */
+    LogEvent copyFrom(@NonNull LogEvent src) {
+        mLevel = src.mLevel;
+        mTag = src.mTag;
+        mTimeMillis = src.mTimeMillis;
+        mThreadId = src.mThreadId;
+        mThrowable = src.mThrowable;
+        mContent = src.mContent;
+        mFormat = src.mFormat;
+        mArgCount = src.mArgCount;
+        mArg1 = src.mArg1;
+        mArg2 = src.mArg2;
+        mArg3 = src.mArg3;
+        mArgs = src.mArgs;
+        mSupplier = src.mSupplier;
+        mFields.copyFrom(src.mFields);
+        isRendered = src.isRendered;
+        if (isRendered) {
+            mMessage.setLength(0);
+            mMessage.append(src.mMessage);
+        }
+        return this;
+    }
+
+    /**
+     * 回收到复用池(EventRing中的和线程复用的只清空)，回收后不能再使用
+     */
+    public void recycle() {
+        mLevel = null;
+        mTag = null;
+        mThrowable = null;
+        mContent = null;
+        mFormat = null;
+        mArgCount = 0;
+        mArg1 = mArg2 = mArg3 = null;
+        mArgs = null;
+        mSupplier = null;
+        mFields.clear();
+        isRendered = false;
+        mMessage = reset(mMessage, 128);
+        mText = reset(mText, 256);
+        if (isLocal) {
+            isInUse = false;
+            return;
+        }
+        if (!isPooled) return;
+        synchronized (sPoolSync) {
+            if (sPoolSize < MAX_POOL_SIZE) {
+                next = sPool;
+                sPool = this;
+                sPoolSize++;
+            }
+        }
+    }
+
+    private static StringBuilder reset(StringBuilder sb, int initCapacity) {
+        if (sb.capacity() > MAX_BUILDER_CAPACITY) {
+            return new StringBuilder(initCapacity);
+        }
+        sb.setLength(0);
+        return sb;
+    }
+
+    public LogEvent setContent(String content) {
+        mContent = content;
+        return this;
+    }
+
+    public LogEvent setFormat(@NonNull String format, int argCount, Object arg1, Object arg2, Object arg3) {
+        mFormat = format;
+        mArgCount = argCount;
+        mArg1 = arg1;
+        mArg2 = arg2;
+        mArg3 = arg3;
+        return this;
+    }
+
+    public LogEvent setFormat(@NonNull String format, Object[] args) {
+        mFormat = format;
+        mArgCount = -1;
+        mArgs = args;
+        return this;
+    }
+
+    public LogEvent setSupplier(@NonNull DSupplier<String> supplier) {
+        mSupplier = supplier;
+        return this;
+    }
+
+    public LogEvent setThrowable(Throwable throwable) {
+        mThrowable = throwable;
+        return this;
+    }
+
+    public DLevel getLevel() {
+        return mLevel;
+    }
+
+    public String getTag() {
+        return mTag;
+    }
+
+    /**
+     * @return 产生日志时的时间戳
+     */
+    public long getTimeMillis() {
+        return mTimeMillis;
+    }
+
+    /**
+     * @return 产生日志的线程id
+     */
+    public long getThreadId() {
+        return mThreadId;
+    }
+
+    public Throwable getThrowable() {
+        return mThrowable;
+    }
+
+    /**
+     * @return 结构化日志的字段，没有时为空
+     */
+    public LogFields getFields() {
+        return mFields;
+    }
+
+    /**
+     * 获取日志消息，包含" key=value"形式的字段和异常堆栈，第一次调用时才会格式化
+     *
+     * @return 日志消息
+     */
+    public CharSequence getMessage() {
+        if (null == mThrowable && null == mFormat && null == mSupplier && 0 == mFields.size()) {
+            return String.valueOf(mContent);
+        }
+        if (!isRendered) {
+            render(mMessage, true);
+            isRendered = true;
+        }
+        return mMessage;
+    }
+
+    /**
+     * 获取日志消息字符串，供只接受String的输出使用(如android.util.Log)
+     *
+     * @return 日志消息
+     */
+    public String getMessageString() {
+        CharSequence message = getMessage();
+        return message instanceof String ? (String) message : message.toString();
+    }
+
+    /**
+     * @return 供Printer装饰整行内容使用的StringBuilder
+     */
+    public StringBuilder getText() {
+        return mText;
+    }
+
+    /**
+     * 把日志消息追加到sb中，供单独输出字段的Printer使用
+     *
+     * @param sb         目标
+     * @param withFields 是否包含" key=value"形式的字段
+     * @return sb
+     */
+    public StringBuilder appendMessage(@NonNull StringBuilder sb, boolean withFields) {
+        render(sb, withFields);
+        return sb;
+    }
+
+    private void render(StringBuilder sb, boolean withFields) {
+        if (null != mSupplier) {
+            try {
+                sb.append(mSupplier.get());
+            } catch (Throwable t) {
+                sb.append("[FAILED supplier: ").append(t).append(']');
+            }
+        } else if (null != mFormat) {
+            if (mArgCount < 0) {
+                MessageFormatter.formatTo(sb, mFormat, mArgs);
+            } else {
+                MessageFormatter.formatTo(sb, mFormat, mArgCount, mArg1, mArg2, mArg3);
+            }
+        } else if (null != mContent || null == mThrowable) {
+            sb.append(mContent);
+        }
+        if (withFields) {
+            mFields.appendTo(sb);
+        }
+        if (null != mThrowable) {
+            if (sb.length() > 0) {
+                sb.append(LINE_SEPARATOR);
+            }
+            sb.append(Log.getStackTraceString(mThrowable));
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.df.dlogger.logger;
+
+import android.support.annotation.NonNull;
+
+/**
+ * 结构化日志的键值字段，按类型保存在基本类型数组中，添加时不会装箱；数组随LogEvent和LogBuilder复用.
+ * <p>
+ * double按{@link Double#doubleToRawLongBits(double)}、boolean按0/1和long保存在同一个数组中.
+ * 同名字段只保留最后添加的值，位置不变.
+ */
+public final class LogFields {
+
+    public static final int TYPE_LONG = 0;
+    public static final int TYPE_DOUBLE = 1;
+    public static final int TYPE_BOOLEAN = 2;
+    public static final int TYPE_STRING = 3;
+
+    /** 初始容量 */
+    private static final int INIT_CAPACITY = 8;
+    /** 超过该容量后清空时重建，避免长期持有大数组 */
+    private static final int MAX_CAPACITY = 64;
+
+    private String[] mKeys = new String[INIT_CAPACITY];
+    private int[] mTypes = new int[INIT_CAPACITY];
+    private long[] mValues = new long[INIT_CAPACITY];
+    /** TYPE_STRING的值，其它类型为null */
+    private String[] mStrings = new String[INIT_CAPACITY];
+    private int mSize;
+
+    LogFields() {}
+
+    /**
+     * @return 字段个数
+     */
+    public int size() {
+        return mSize;
+    }
+
+    public String getKey(int index) {
+        return mKeys[index];
+    }
+
+    /**
+     * @param index 位置
+     * @return TYPE_LONG、TYPE_DOUBLE、TYPE_BOOLEAN或TYPE_STRING
+     */
+    public int getType(int index) {
+        return mTypes[index];
+    }
+
+    public long getLong(int index) {
+        return mValues[index];
+    }
+
+    public double getDouble(int index) {
+        return Double.longBitsToDouble(mValues[index]);
+    }
+
+    public boolean getBoolean(int index) {
+        return mValues[index] != 0;
+    }
+
+    public String getString(int index) {
+        return mStrings[index];
+    }
+
+    void add(@NonNull String key, long value) {
+        put(key, TYPE_LONG, value, null);
+    }
+
+    void add(@NonNull String key, double value) {
+        put(key, TYPE_DOUBLE, Double.doubleToRawLongBits(value), null);
+    }
+
+    void add(@NonNull String key, boolean value) {
+        put(key, TYPE_BOOLEAN, value ? 1 : 0, null);
+    }
+
+    void add(@NonNull String key, String value) {
+        put(key, TYPE_STRING, 0, value);
+    }
+
+    /**
+     * 替换为other中的全部字段
+     */
+    void copyFrom(@NonNull LogFields other) {
+        clear();
+        int size = other.mSize;
+        ensure(size);
+        System.arraycopy(other.mKeys, 0, mKeys, 0, size);
+        System.arraycopy(other.mTypes, 0, mTypes, 0, size);
+        System.arraycopy(other.mValues, 0, mValues, 0, size);
+        System.arraycopy(other.mStrings, 0, mStrings, 0, size);
+        mSize = size;
+    }
+
+    /**
+     * 清空字段，释放对键和字符串值的引用
+     */
+    void clear() {
+        if (mKeys.length > MAX_CAPACITY) {
+            mKeys = new String[INIT_CAPACITY];
+            mTypes = new int[INIT_CAPACITY];
+            mValues = new long[INIT_CAPACITY];
+            mStrings = new String[INIT_CAPACITY];
+        } else {
+            for (int i = 0; i < mSize; i++) {
+                mKeys[i] = null;
+                mStrings[i] = null;
+            }
+        }
+        mSize = 0;
+    }
+
+    /**
+     * 按" key=value"的形式追加到文本消息中
+     *
+     * @param sb 消息
+     */
+    void appendTo(@NonNull StringBuilder sb) {
+        for (int i = 0; i < mSize; i++) {
+            sb.append(' ').append(mKeys[i]).append('=');
+            switch (mTypes[i]) {
+                case TYPE_LONG:
+                    sb.append(mValues[i]);
+                    break;
+                case TYPE_DOUBLE:
+                    sb.append(getDouble(i));
+                    break;
+                case TYPE_BOOLEAN:
+                    sb.append(getBoolean(i));
+                    break;
+                default:
+                    sb.append(mStrings[i]);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * 估算占用的字符数，每个非字符串值按16个字符计算
+     */
+    int estimateChars() {
+        int chars = 0;
+        for (int i = 0; i < mSize; i++) {
+            chars += mKeys[i].length() + (null == mStrings[i] ? 16 : mStrings[i].length());
+        }
+        return chars;
+    }
+
+    private void put(String key, int type, long value, String string) {
+        int index = indexOf(key);
+        if (index < 0) {
+            ensure(mSize + 1);
+            index = mSize++;
+            mKeys[index] = key;
+        }
+        mTypes[index] = type;
+        mValues[index] = value;
+        mStrings[index] = string;
+    }
+
+    /**
+     * 字段通常只有几个，顺序查找
+     */
+    private int indexOf(String key) {
+        for (int i = 0; i < mSize; i++) {
+            if (key.equals(mKeys[i])) return i;
+        }
+        return -1;
+    }
+
+    private void ensure(int capacity) {
+        if (capacity <= mKeys.length) return;
+        int newCapacity = Math.max(mKeys.length * 2, capacity);
+        String[] keys = new String[newCapacity];
+        int[] types = new int[newCapacity];
+        long[] values = new long[newCapacity];
+        String[] strings = new String[newCapacity];
+        System.arraycopy(mKeys, 0, keys, 0, mSize);
+        System.arraycopy(mTypes, 0, types, 0, mSize);
+        System.arraycopy(mValues, 0, values, 0, mSize);
+        System.arraycopy(mStrings, 0, strings, 0, mSize);
+        mKeys = keys;
+        mTypes = types;
+        mValues = values;
+        mStrings = strings;
+    }
+}
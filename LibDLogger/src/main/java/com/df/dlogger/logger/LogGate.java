@@ -0,0 +1,130 @@
+package com.df.dlogger.logger;
+
+import android.support.annotation.NonNull;
+
+import com.df.dlogger.constant.DLevel;
+
+/**
+ * 日志开关，把ULog的开关、控制台开关和等级、其它输出目标的等级以及当前DSetting的等级/是否保存预先合并成一个位掩码,
+ * 日志调用时只需读取一次volatile字段即可判断是否需要继续生成tag和消息.
+ * <p>
+ * 掩码中每一位对应{@link DLevel#getLevel()}.
+ */
+public final class LogGate {
+
+    /** VERBOSE到WTF全部等级 */
+    private static final int ALL_LEVELS = maskFrom(DLevel.ALL);
+
+    /** ULog开关 */
+    private static int sFacadeMask = ALL_LEVELS;
+    /** 控制台开关 */
+    private static int sConsoleMask = ALL_LEVELS;
+    /** ConsoleSink中输出的等级 */
+    private static int sConsoleLevelMask = ALL_LEVELS;
+    /** DLog.addPrinter添加的输出目标需要的等级 */
+    private static int sSinkMask = 0;
+    /** DSetting中需要保存的等级 */
+    private static int sStoreMask = ALL_LEVELS;
+
+    /** 合并后的开关 */
+    private static volatile int sMask = ALL_LEVELS;
+    /** 不考虑ULog开关时合并后的开关，供DLog直接调用时使用 */
+    private static volatile int sOutputMask = ALL_LEVELS;
+
+    private LogGate() {
+        throw new UnsupportedOperationException("cannot be instantiated");
+    }
+
+    /**
+     * 判断ULog是否需要处理该等级的日志
+     *
+     * @param level 日志等级
+     * @return true 需要处理
+     */
+    public static boolean isEnabled(@NonNull DLevel level) {
+        return (sMask & level.getLevel()) != 0;
+    }
+
+    /**
+     * 不考虑ULog开关，判断控制台、文件或其它输出目标是否可能需要该等级的日志
+     *
+     * @param level 日志等级
+     * @return true 可能需要，还要按标签判断
+     */
+    static boolean isOutputEnabled(@NonNull DLevel level) {
+        return (sOutputMask & level.getLevel()) != 0;
+    }
+
+    /**
+     * 设置ULog是否输出日志
+     *
+     * @param enable true or false
+     */
+    public static synchronized void setFacade(boolean enable) {
+        sFacadeMask = enable ? ALL_LEVELS : 0;
+        update();
+    }
+
+    /**
+     * 设置控制台是否输出日志
+     *
+     * @param enable true or false
+     */
+    public static synchronized void setConsole(boolean enable) {
+        sConsoleMask = enable ? ALL_LEVELS : 0;
+        update();
+    }
+
+    /**
+     * 更新控制台输出的等级
+     *
+     * @param mask 等级掩码
+     */
+    static synchronized void setConsoleLevel(int mask) {
+        sConsoleLevelMask = mask;
+        update();
+    }
+
+    /**
+     * 更新其它输出目标需要的等级
+     *
+     * @param mask 全部输出目标等级掩码的并集
+     */
+    static synchronized void setSinkLevel(int mask) {
+        sSinkMask = mask;
+        update();
+    }
+
+    /**
+     * 根据DSetting更新需要保存的等级
+     *
+     * @param setting 当前使用的DSetting
+     */
+    static synchronized void setStore(@NonNull DSetting setting) {
+        sStoreMask = setting.isNeedStore() ? maskFrom(setting.getLevel()) : 0;
+        update();
+    }
+
+    private static void update() {
+        // 控制台、文件和其它输出目标各自判断，任意一个需要就继续
+        int consoleMask = sConsoleMask & sConsoleLevelMask;
+        sOutputMask = consoleMask | sStoreMask | sSinkMask;
+        sMask = sFacadeMask & sOutputMask;
+    }
+
+    /**
+     * 获取大于等于min的全部等级掩码
+     *
+     * @param min 最低等级
+     * @return 等级掩码
+     */
+    static int maskFrom(@NonNull DLevel min) {
+        int mask = 0;
+        for (DLevel level : DLevel.values()) {
+            if (DLevel.ALL != level && DLevel.NONE != level && min.isEnable(level)) {
+                mask |= level.getLevel();
+            }
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,282 @@
+package com.df.dlogger.logger;
+
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.df.dlogger.constant.DLevel;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 日志输出目标，有独立的等级和标签过滤，可以切换为异步输出.
+ * <p>
+ * 同步模式在调用线程中直接输出；异步模式只把消息放入独立的有界队列，由单独的线程输出，
+ * 队列满时丢弃新日志而不会阻塞调用线程，丢弃的条数在队列清空后输出一条WARN日志.
+ * 切换回同步模式时先输出队列中剩余的日志，输出线程随之结束.
+ * <p>
+ * 消息在调用线程中只生成一次，同一个String交给所有需要的输出目标.
+ */
+public abstract class LogSink implements EventRing.EventHandler, Runnable {
+
+    private static final String TAG = "LogSink";
+
+    /** 默认的异步队列容量 */
+    private static final int DEFAULT_CAPACITY = 256;
+    /** 每次最多连续输出的条数 */
+    private static final int MAX_BATCH = 64;
+    /** 无日志时最长休眠时间 */
+    private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+    /** 等待输出完时的轮询间隔 */
+    private static final long AWAIT_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    /** 汇总日志的标签 */
+    private static final String DROP_TAG = "DLog";
+
+    /** 异步输出线程名 */
+    private final String mThreadName;
+
+    /** 输出的最低等级 */
+    private volatile DLevel mLevel = DLevel.ALL;
+    private volatile int mLevelMask = LogGate.maskFrom(DLevel.ALL);
+    /** 标签过滤，为null时不过滤 */
+    private volatile TagFilter mTagFilter;
+
+    /** 异步队列，为null时同步输出 */
+    private volatile EventRing mRing;
+    private Thread mThread;
+    /** 输出线程是否已休眠或准备休眠 */
+    private volatile boolean isWaiting;
+
+    /** 队列满时丢弃的条数 */
+    private final AtomicLong mDropped = new AtomicLong();
+    /** 上次汇总之后丢弃的条数 */
+    private final AtomicLong mPendingDrops = new AtomicLong();
+
+    LogSink(@NonNull String threadName) {
+        mThreadName = threadName;
+    }
+
+    /**
+     * 输出一条日志，同步时在调用线程中调用，异步时在输出线程中调用
+     *
+     * @param level   等级
+     * @param tag     标签
+     * @param message 完整的消息
+     */
+    protected abstract void write(@NonNull DLevel level, @NonNull String tag, @NonNull String message);
+
+    /**
+     * 等级变化后调用，用于更新{@link LogGate}
+     *
+     * @param mask 新的等级掩码
+     */
+    abstract void onLevelChanged(int mask);
+
+    /**
+     * @return 输出的最低等级
+     */
+    public DLevel getLevel() {
+        return mLevel;
+    }
+
+    /**
+     * 设定输出的最低等级，不影响其它输出目标
+     *
+     * @param level 最低等级，NONE则不输出
+     * @return LogSink
+     */
+    public LogSink setLevel(@NonNull DLevel level) {
+        mLevel = level;
+        mLevelMask = DLevel.NONE == level ? 0 : LogGate.maskFrom(level);
+        onLevelChanged(mLevelMask);
+        return this;
+    }
+
+    int getLevelMask() {
+        return mLevelMask;
+    }
+
+    /**
+     * 设定标签过滤规则，不影响其它输出目标
+     *
+     * @param pattern 规则，见{@link TagFilter#compile(String)}；为null时不过滤
+     * @return LogSink
+     */
+    public LogSink setTagFilter(String pattern) {
+        mTagFilter = null == pattern ? null : TagFilter.compile(pattern);
+        return this;
+    }
+
+    /**
+     * @return 是否异步输出
+     */
+    public boolean isAsync() {
+        return null != mRing;
+    }
+
+    /**
+     * 切换同步或异步输出，异步时使用默认的队列容量
+     *
+     * @param async true - 异步
+     * @return LogSink
+     */
+    public LogSink setAsync(boolean async) {
+        return setAsync(async, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * 切换同步或异步输出；再次设置异步时替换队列，旧队列中的日志仍会输出.
+     *
+     * @param async    true - 异步
+     * @param capacity 异步队列容量，向上取整为2的幂
+     * @return LogSink
+     */
+    public synchronized LogSink setAsync(boolean async, int capacity) {
+        EventRing old = mRing;
+        mRing = async ? new EventRing(capacity) : null;
+        if (null != old) {
+            drainAll(old);
+        }
+        if (async && null == mThread) {
+            mThread = new Thread(this, mThreadName);
+            mThread.setDaemon(true);
+            mThread.start();
+        } else if (null != mThread) {
+            LockSupport.unpark(mThread);
+        }
+        return this;
+    }
+
+    /**
+     * @return 异步队列满时丢弃的总条数
+     */
+    public long getDroppedCount() {
+        return mDropped.get();
+    }
+
+    /**
+     * 异步时等待队列中的日志输出完，同步时直接返回
+     *
+     * @param timeoutNanos 最长等待时间
+     * @return true - 已输出完，false - 超时
+     */
+    boolean await(long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (true) {
+            EventRing ring = mRing;
+            if (null == ring || ring.isEmpty() || Thread.currentThread() == mThread) return true;
+            long left = deadline - System.nanoTime();
+            if (left <= 0) return false;
+            LockSupport.unpark(mThread);
+            LockSupport.parkNanos(this, Math.min(left, AWAIT_POLL_NANOS));
+        }
+    }
+
+    /**
+     * 判断是否输出该日志
+     *
+     * @param level 等级
+     * @param tag   标签
+     * @return true - 输出
+     */
+    public boolean isLoggable(@NonNull DLevel level, String tag) {
+        if ((mLevelMask & level.getLevel()) == 0) {
+            return false;
+        }
+        TagFilter filter = mTagFilter;
+        return null == filter || (null != tag && filter.accept(tag));
+    }
+
+    /**
+     * 输出一条已经过{@link #isLoggable}判断的日志，异步时只放入队列.
+     *
+     * @param level   等级
+     * @param tag     标签
+     * @param message 完整的消息
+     */
+    public void print(@NonNull DLevel level, String tag, @NonNull String message) {
+        EventRing ring = mRing;
+        if (null == ring) {
+            write(level, String.valueOf(tag), message);
+            return;
+        }
+        LogEvent event = ring.tryClaim();
+        if (null == event) {
+            mDropped.incrementAndGet();
+            mPendingDrops.incrementAndGet();
+            return;
+        }
+        event.init(level, tag).setContent(message);
+        ring.publish(event);
+        if (isWaiting) {
+            LockSupport.unpark(mThread);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // 输出线程
+    ///////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void onEvent(@NonNull LogEvent event, boolean endOfBatch) {
+        write(event.getLevel(), String.valueOf(event.getTag()), event.getMessageString());
+    }
+
+    @Override
+    public void onFlush() {
+        // 每条直接输出，不需要合并
+    }
+
+    @Override
+    public void run() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        while (true) {
+            EventRing ring = mRing;
+            if (null == ring) {
+                synchronized (this) {
+                    if (null == mRing) {
+                        mThread = null;
+                        return;
+                    }
+                }
+                continue;
+            }
+            int count = 0;
+            try {
+                count = ring.drain(this, MAX_BATCH);
+            } catch (Throwable t) {
+                Log.e(TAG, "run()#catch", t);
+            }
+            if (count > 0) {
+                continue;
+            }
+            if (mPendingDrops.get() > 0) {
+                reportDrops();
+            }
+            isWaiting = true;
+            if (ring == mRing && ring.isEmpty()) {
+                LockSupport.parkNanos(this, IDLE_NANOS);
+            }
+            isWaiting = false;
+        }
+    }
+
+    private void drainAll(EventRing ring) {
+        while (true) {
+            try {
+                if (0 == ring.drain(this, MAX_BATCH)) return;
+            } catch (Throwable t) {
+                Log.e(TAG, "drainAll(...)#catch", t);
+            }
+        }
+    }
+
+    private void reportDrops() {
+        long dropped = mPendingDrops.getAndSet(0);
+        if (dropped > 0) {
+            write(DLevel.WARN, DROP_TAG, mThreadName + " dropped " + dropped + " events, queue full");
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.df.dlogger.logger;
+
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.df.dlogger.constant.DLevel;
+import com.df.dlogger.constant.DOverflow;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 写文件线程，从{@link EventRing}中批量读取日志交给处理者.
+ * <p>
+ * 读取到的日志先由处理者编码到缓冲区，满足以下任一条件时才调用{@link EventRing.EventHandler#onFlush()}一次写入:
+ * 累计达到{@link DSetting#getBatchSize()}条；队列已空且最早的一条已等待超过{@link DSetting#getLingerMillis()}.
+ * <p>
+ * 队列满时按{@link DSetting#getOverflow()}等待或丢弃，丢弃的条数在队列清空后写入一条WARN日志.
+ * <p>
+ * {@link #sync(long)}等待调用之前占用的日志全部处理完并调用{@link EventRing.EventHandler#onSync()}.
+ */
+final class LogWriter implements Runnable {
+
+    private static final String TAG = "LogWriter";
+
+    /** 无日志时最长休眠时间 */
+    private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final EventRing mRing;
+    private final EventRing.EventHandler mHandler;
+    private final DLog mOwner;
+    private final Thread mThread;
+    private final WriterStats mStats = new WriterStats();
+
+    /** 写文件线程是否已休眠或准备休眠 */
+    private volatile boolean isWaiting;
+    /** 休眠时队列中达到多少条才需要唤醒，等待凑批时大于1 */
+    private volatile int mWakeThreshold = 1;
+
+    /** 写文件线程被唤醒等待队列腾出空位时的自旋次数 */
+    private static final int FULL_SPINS = 64;
+    /** 汇总日志的标签 */
+    private static final String DROP_TAG = "DLog";
+
+    /** 上次汇总之后按等级丢弃的条数，下标为DLevel.ordinal() */
+    private final AtomicLongArray mDrops = new AtomicLongArray(DLevel.values().length);
+    /** 上次汇总之后是否有丢弃 */
+    private volatile boolean hasDrops;
+    /** DOverflow.SAMPLE的计数 */
+    private final AtomicLong mSampleCount = new AtomicLong();
+
+    /** 请求落盘时的队列位置，写文件线程读取到该位置后落盘 */
+    private final AtomicLong mSyncTarget = new AtomicLong();
+    /** 已落盘的队列位置 */
+    private volatile long mSynced;
+    /** 等待落盘时的轮询间隔 */
+    private static final long SYNC_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    LogWriter(@NonNull EventRing ring, @NonNull EventRing.EventHandler handler, @NonNull DLog owner) {
+        mRing = ring;
+        mHandler = handler;
+        mOwner = owner;
+        mThread = new Thread(this, "DLog-writer");
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    WriterStats getStats() {
+        return mStats;
+    }
+
+    /**
+     * 占用一个槽位，队列已满时按{@link DSetting#getOverflow()}处理.
+     *
+     * @param level 日志等级
+     * @return 槽位里的LogEvent，被丢弃时返回null
+     */
+    LogEvent claim(@NonNull DLevel level) {
+        DSetting setting = mOwner.getSetting();
+        DOverflow overflow = setting.getOverflow();
+        int capacity = Math.min(mRing.capacity(), setting.getQueueCapacity());
+        long maxBytes = setting.getQueueBytes();
+        boolean isDroppable = level.getLevel() < DLevel.WARN.getLevel();
+        if (DOverflow.SAMPLE == overflow && isDroppable && mRing.size() >= capacity / 2
+                && mSampleCount.getAndIncrement() % setting.getSampleRate() != 0) {
+            return drop(level);
+        }
+        int spins = 0;
+        while (true) {
+            if (mRing.size() < capacity && (0 == maxBytes || mRing.bytes() < maxBytes)) {
+                LogEvent event = mRing.tryClaim();
+                if (null != event) {
+                    event.mEstimate = maxBytes > 0 ? -1 : 0;
+                    return event;
+                }
+            }
+            switch (overflow) {
+                case DROP_NEWEST:
+                    return drop(level);
+                case DROP_OLDEST:
+                    DLevel dropped = mRing.dropOldest();
+                    if (null != dropped) {
+                        count(dropped);
+                        continue;
+                    }
+                    // 最早的槽位还没有发布，等待一会儿后丢弃新日志
+                    if (spins >= FULL_SPINS) {
+                        return drop(level);
+                    }
+                    break;
+                case DROP_BELOW_LEVEL:
+                case SAMPLE:
+                    if (isDroppable) {
+                        return drop(level);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            forceSignal();
+            if (++spins < FULL_SPINS) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(100_000L);
+            }
+        }
+    }
+
+    private LogEvent drop(DLevel level) {
+        count(level);
+        forceSignal();
+        return null;
+    }
+
+    private void count(DLevel level) {
+        if (null != level) {
+            mDrops.incrementAndGet(level.ordinal());
+        }
+        hasDrops = true;
+    }
+
+    /**
+     * 发布日志并在必要时唤醒写文件线程.
+     *
+     * @param event 通过claim获取的LogEvent
+     */
+    void publish(@NonNull LogEvent event) {
+        if (event.mEstimate < 0) {
+            event.mEstimate = event.estimateSize();
+        }
+        mRing.publish(event);
+        if (isWaiting && mRing.size() >= mWakeThreshold) {
+            LockSupport.unpark(mThread);
+        }
+    }
+
+    /**
+     * 等待当前已占用的日志全部写入文件并落盘，不能在写文件线程中调用.
+     *
+     * @param timeoutNanos 最长等待时间
+     * @return true - 已完成，false - 超时
+     */
+    boolean sync(long timeoutNanos) {
+        if (Thread.currentThread() == mThread) return false;
+        long target = mRing.tail();
+        while (true) {
+            long current = mSyncTarget.get();
+            if (current >= target || mSyncTarget.compareAndSet(current, target)) break;
+        }
+        LockSupport.unpark(mThread);
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (mSynced < target) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) return false;
+            LockSupport.parkNanos(this, Math.min(left, SYNC_POLL_NANOS));
+        }
+        return true;
+    }
+
+    private void forceSignal() {
+        if (isWaiting) {
+            LockSupport.unpark(mThread);
+        }
+    }
+
+    @Override
+    public void run() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        int pending = 0;
+        long firstPendingNanos = 0;
+        while (true) {
+            DSetting setting = mOwner.getSetting();
+            int batchSize = Math.max(1, setting.getBatchSize());
+            long lingerNanos = TimeUnit.MILLISECONDS.toNanos(setting.getLingerMillis());
+
+            int count = 0;
+            try {
+                count = mRing.drain(mHandler, Math.max(1, batchSize - pending));
+            } catch (Throwable t) {
+                Log.e(TAG, "run()#catch", t);
+            }
+            if (hasDrops && mRing.isEmpty()) {
+                count += reportDrops(setting.getOverflow());
+            }
+            long syncTarget = mSyncTarget.get();
+            if (syncTarget > mSynced && mRing.head() >= syncTarget) {
+                sync(pending + count, syncTarget);
+                pending = 0;
+                continue;
+            }
+            long now = System.nanoTime();
+            if (count > 0) {
+                if (0 == pending) {
+                    firstPendingNanos = now;
+                }
+                pending += count;
+            }
+
+            long lingerLeft = lingerNanos - (now - firstPendingNanos);
+            if (pending > 0 && (pending >= batchSize || (lingerLeft <= 0 && mRing.isEmpty()))) {
+                flush(pending);
+                pending = 0;
+                continue;
+            }
+            if (count > 0) {
+                continue;
+            }
+
+            // 队列为空：没有待写入的日志时一直等待，否则等到linger超时或凑够一批
+            mWakeThreshold = pending > 0 ? batchSize - pending : 1;
+            isWaiting = true;
+            if (pending > 0 ? mRing.size() < mWakeThreshold : mRing.isEmpty()) {
+                LockSupport.parkNanos(this, pending > 0 ? lingerLeft : IDLE_NANOS);
+                mStats.recordWakeup();
+            }
+            isWaiting = false;
+        }
+    }
+
+    /**
+     * 队列清空后把丢弃的条数作为一条WARN日志交给处理者
+     *
+     * @return 写入的条数
+     */
+    private int reportDrops(DOverflow overflow) {
+        hasDrops = false;
+        long[] drops = new long[mDrops.length()];
+        long total = 0;
+        for (int i = 0; i < drops.length; i++) {
+            drops[i] = mDrops.getAndSet(i, 0);
+            total += drops[i];
+        }
+        if (0 == total) return 0;
+        mStats.recordDrops(drops);
+        StringBuilder sb = new StringBuilder(128).append("dropped ").append(total)
+                .append(" events, overflow=").append(overflow.name()).append(':');
+        DLevel[] levels = DLevel.values();
+        for (int i = 0; i < drops.length; i++) {
+            if (drops[i] > 0) {
+                sb.append(' ').append(levels[i].name()).append('=').append(drops[i]);
+            }
+        }
+        LogEvent event = LogEvent.obtain(DLevel.WARN, DROP_TAG).setContent(sb.toString());
+        try {
+            mHandler.onEvent(event, true);
+        } catch (Throwable t) {
+            Log.e(TAG, "reportDrops()#catch", t);
+        } finally {
+            event.recycle();
+        }
+        return 1;
+    }
+
+    private void sync(int events, long target) {
+        try {
+            mHandler.onSync();
+        } catch (Throwable t) {
+            Log.e(TAG, "sync()#catch", t);
+        }
+        if (events > 0) {
+            mStats.recordFlush(events);
+        }
+        mSynced = target;
+    }
+
+    private void flush(int events) {
+        try {
+            mHandler.onFlush();
+        } catch (Throwable t) {
+            Log.e(TAG, "flush()#catch", t);
+        }
+        mStats.recordFlush(events);
+    }
+}
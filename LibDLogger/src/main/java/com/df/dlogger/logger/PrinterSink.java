@@ -0,0 +1,40 @@
+package com.df.dlogger.logger;
+
+import android.support.annotation.NonNull;
+
+import com.df.dlogger.constant.DLevel;
+import com.df.dlogger.printer.Printer;
+
+/**
+ * 通过{@link DLog#addPrinter(Printer)}添加的输出目标，把日志交给{@link Printer#print(DLevel, String, String)}.
+ * <p>
+ * 异步时由"DLog-" + Printer类名的线程输出.
+ */
+public final class PrinterSink extends LogSink {
+
+    private final Printer mPrinter;
+    private final DLog mOwner;
+
+    PrinterSink(@NonNull Printer printer, @NonNull DLog owner) {
+        super("DLog-" + printer.getClass().getSimpleName());
+        mPrinter = printer;
+        mOwner = owner;
+    }
+
+    /**
+     * @return 输出的Printer
+     */
+    public Printer getPrinter() {
+        return mPrinter;
+    }
+
+    @Override
+    protected void write(@NonNull DLevel level, @NonNull String tag, @NonNull String message) {
+        mPrinter.print(level, tag, message);
+    }
+
+    @Override
+    void onLevelChanged(int mask) {
+        mOwner.updateSinkGate();
+    }
+}
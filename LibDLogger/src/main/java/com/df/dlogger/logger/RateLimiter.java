@@ -0,0 +1,221 @@
+package com.df.dlogger.logger;
+
+import android.support.annotation.NonNull;
+
+import com.df.dlogger.constant.DLevel;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按标签和等级限流或采样，在调用线程中生成消息之前判断，只使用无锁计数.
+ * <p>
+ * 规则按添加顺序匹配，第一条匹配的规则生效；每个标签单独计数，ULog的标签包含调用位置，因此也是按调用点计数.
+ * 限流使用GCRA(等价于令牌桶)，采样每N条保留1条. 被抑制的条数在之后有日志通过时返回，由调用者输出汇总，
+ * 同一标签最多每秒汇总一次.
+ */
+final class RateLimiter {
+
+    /** 每条规则最多单独计数的标签数，超出后共用一个计数 */
+    private static final int MAX_KEYS = 1024;
+    /** 同一标签两次汇总的最小间隔 */
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /** 写时复制，判断时不加锁 */
+    private volatile Rule[] mRules = new Rule[0];
+
+    /**
+     * 汇总被抑制的条数
+     */
+    interface Reporter {
+        void report(@NonNull String key, long suppressed);
+    }
+
+    synchronized void add(@NonNull Rule rule) {
+        Rule[] rules = mRules;
+        Rule[] newRules = new Rule[rules.length + 1];
+        System.arraycopy(rules, 0, newRules, 0, rules.length);
+        newRules[rules.length] = rule;
+        mRules = newRules;
+    }
+
+    synchronized void clear() {
+        mRules = new Rule[0];
+    }
+
+    /**
+     * 判断是否通过限流或采样
+     *
+     * @param level 等级
+     * @param tag   标签
+     * @return 小于0 - 被抑制；否则为需要汇总的被抑制条数，通常为0
+     */
+    long acquire(@NonNull DLevel level, String tag) {
+        Rule[] rules = mRules;
+        if (0 == rules.length) return 0;
+        for (Rule rule : rules) {
+            if (rule.matches(level, tag)) {
+                long now = System.nanoTime();
+                return rule.bucket(tag, now).acquire(rule, now);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 汇总全部尚未汇总的被抑制条数，如进程退出前
+     *
+     * @param reporter 汇总
+     */
+    void drain(@NonNull Reporter reporter) {
+        for (Rule rule : mRules) {
+            for (Map.Entry<String, Bucket> entry : rule.mBuckets.entrySet()) {
+                long suppressed = entry.getValue().mSuppressed.getAndSet(0);
+                if (suppressed > 0) {
+                    reporter.report(entry.getKey(), suppressed);
+                }
+            }
+            long suppressed = rule.mOverflow.mSuppressed.getAndSet(0);
+            if (suppressed > 0) {
+                reporter.report(rule.toString(), suppressed);
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // 规则
+    ///////////////////////////////////////////////////////////////////////////
+
+    static final class Rule {
+
+        /** 标签过滤，为null时匹配全部标签 */
+        private final TagFilter mFilter;
+        private final String mPattern;
+        /** 匹配的等级掩码 */
+        private final int mLevelMask;
+        /** 限流时每条的间隔，采样时为0 */
+        private final long mIntervalNanos;
+        /** 限流时允许的突发量对应的时间 */
+        private final long mToleranceNanos;
+        /** 采样时每N条保留1条，限流时为0 */
+        private final int mSampleRate;
+
+        private final ConcurrentHashMap<String, Bucket> mBuckets = new ConcurrentHashMap<>();
+        /** 标签数超过MAX_KEYS后共用的计数 */
+        private final Bucket mOverflow;
+
+        private Rule(String pattern, @NonNull DLevel level, long intervalNanos, int burst, int sampleRate) {
+            mPattern = pattern;
+            mFilter = null == pattern || pattern.isEmpty() ? null : TagFilter.compile(pattern);
+            int mask = 0;
+            for (DLevel value : DLevel.values()) {
+                if (DLevel.ALL == level || (value != DLevel.ALL && value != DLevel.NONE
+                        && value.getLevel() <= level.getLevel())) {
+                    mask |= value.getLevel();
+                }
+            }
+            mLevelMask = mask;
+            mIntervalNanos = intervalNanos;
+            mToleranceNanos = intervalNanos * (burst - 1);
+            mSampleRate = sampleRate;
+            mOverflow = newBucket(System.nanoTime());
+        }
+
+        /**
+         * 限流规则
+         *
+         * @param pattern   标签正则，为null或空时匹配全部标签
+         * @param level     不高于该等级的日志生效，ALL为全部等级
+         * @param perSecond 每秒允许的条数
+         * @param burst     允许的突发条数，至少为1
+         * @return Rule
+         */
+        static Rule limit(String pattern, @NonNull DLevel level, double perSecond, int burst) {
+            long interval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / Math.max(perSecond, 1e-9)));
+            return new Rule(pattern, level, interval, Math.max(1, burst), 0);
+        }
+
+        /**
+         * 采样规则
+         *
+         * @param pattern 标签正则，为null或空时匹配全部标签
+         * @param level   不高于该等级的日志生效，ALL为全部等级
+         * @param n       每N条保留1条
+         * @return Rule
+         */
+        static Rule sample(String pattern, @NonNull DLevel level, int n) {
+            return new Rule(pattern, level, 0, 1, Math.max(1, n));
+        }
+
+        boolean matches(@NonNull DLevel level, String tag) {
+            return (mLevelMask & level.getLevel()) != 0
+                    && (null == mFilter || (null != tag && mFilter.accept(tag)));
+        }
+
+        Bucket bucket(String tag, long now) {
+            String key = String.valueOf(tag);
+            Bucket bucket = mBuckets.get(key);
+            if (null != bucket) return bucket;
+            if (mBuckets.size() >= MAX_KEYS) return mOverflow;
+            Bucket created = newBucket(now);
+            bucket = mBuckets.putIfAbsent(key, created);
+            return null == bucket ? created : bucket;
+        }
+
+        private Bucket newBucket(long now) {
+            return new Bucket(mSampleRate > 0 ? 0 : now, now);
+        }
+
+        @Override
+        public String toString() {
+            return null == mPattern ? "*" : mPattern;
+        }
+    }
+
+    private static final class Bucket {
+
+        /** 限流时为理论到达时间(TAT)，采样时为计数 */
+        private final AtomicLong mState;
+        /** 上次汇总之后被抑制的条数 */
+        private final AtomicLong mSuppressed = new AtomicLong();
+        /** 上次汇总的时间 */
+        private final AtomicLong mLastReport;
+
+        /**
+         * @param state 限流时为创建时间，此时允许突发量；采样时为0，保留第一条
+         * @param now   创建时间
+         */
+        Bucket(long state, long now) {
+            mState = new AtomicLong(state);
+            mLastReport = new AtomicLong(now - REPORT_INTERVAL_NANOS);
+        }
+
+        long acquire(@NonNull Rule rule, long now) {
+            boolean isAdmitted = rule.mSampleRate > 0
+                    ? 0 == mState.getAndIncrement() % rule.mSampleRate
+                    : admitLimit(rule, now);
+            if (!isAdmitted) {
+                mSuppressed.incrementAndGet();
+                return -1;
+            }
+            if (0 == mSuppressed.get()) return 0;
+            long last = mLastReport.get();
+            if (now - last < REPORT_INTERVAL_NANOS || !mLastReport.compareAndSet(last, now)) return 0;
+            return mSuppressed.getAndSet(0);
+        }
+
+        /**
+         * GCRA：理论到达时间超前当前时间不超过容许量时通过，并把理论到达时间推后一个间隔
+         */
+        private boolean admitLimit(Rule rule, long now) {
+            while (true) {
+                long tat = mState.get();
+                long base = tat - now > 0 ? tat : now;
+                if (base - now > rule.mToleranceNanos) return false;
+                if (mState.compareAndSet(tat, base + rule.mIntervalNanos)) return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.df.dlogger.logger;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * tag过滤，语义与 Pattern.matcher(tag).find() 相同.
+ * <p>
+ * 不含正则元字符的规则直接使用 contains/startsWith/endsWith/equals 判断；
+ * 其它规则使用正则，并按tag缓存判断结果，缓存超过上限时整体清空.
+ * 规则变化时由DSetting整体替换TagFilter对象，旧的缓存随之失效.
+ */
+public abstract class TagFilter {
+
+    /** 正则判断结果缓存的上限 */
+    private static final int MAX_CACHE_SIZE = 512;
+
+    /** 正则中的元字符 */
+    private static final String META_CHARS = "\\[](){}.*+?^$|";
+
+    /**
+     * 判断tag是否符合规则.
+     *
+     * @param tag 日志标签
+     * @return 符合返回true
+     */
+    public abstract boolean accept(String tag);
+
+    /**
+     * 根据正则表达式生成过滤器.
+     *
+     * @param pattern 正则表达式
+     * @return TagFilter
+     */
+    public static TagFilter compile(@NonNull String pattern) {
+        boolean anchorStart = pattern.startsWith("^");
+        boolean anchorEnd = pattern.endsWith("$") && !pattern.endsWith("\\$");
+        String literal = pattern.substring(anchorStart ? 1 : 0,
+                Math.max(anchorStart ? 1 : 0, pattern.length() - (anchorEnd ? 1 : 0)));
+        if (isLiteral(literal)) {
+            return new LiteralFilter(literal, anchorStart, anchorEnd);
+        }
+        return new RegexFilter(Pattern.compile(pattern));
+    }
+
+    /**
+     * 根据已编译的正则表达式生成过滤器.
+     *
+     * @param pattern 正则表达式
+     * @return TagFilter
+     */
+    public static TagFilter compile(@NonNull Pattern pattern) {
+        if (0 == pattern.flags()) {
+            return compile(pattern.pattern());
+        }
+        return new RegexFilter(pattern);
+    }
+
+    private static boolean isLiteral(String str) {
+        for (int i = 0; i < str.length(); i++) {
+            if (META_CHARS.indexOf(str.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 不含元字符的规则
+     */
+    private static final class LiteralFilter extends TagFilter {
+        private final String mLiteral;
+        private final boolean isAnchorStart;
+        private final boolean isAnchorEnd;
+
+        LiteralFilter(String literal, boolean anchorStart, boolean anchorEnd) {
+            mLiteral = literal;
+            isAnchorStart = anchorStart;
+            isAnchorEnd = anchorEnd;
+        }
+
+        @Override
+        public boolean accept(String tag) {
+            if (isAnchorStart && isAnchorEnd) {
+                return tag.equals(mLiteral);
+            } else if (isAnchorStart) {
+                return tag.startsWith(mLiteral);
+            } else if (isAnchorEnd) {
+                return tag.endsWith(mLiteral);
+            }
+            return tag.contains(mLiteral);
+        }
+    }
+
+    /**
+     * 正则规则，按tag缓存结果
+     */
+    private static final class RegexFilter extends TagFilter {
+        private final Pattern mPattern;
+        private final ConcurrentHashMap<String, Boolean> mDecisions = new ConcurrentHashMap<>();
+        private final AtomicInteger mSize = new AtomicInteger();
+
+        RegexFilter(Pattern pattern) {
+            mPattern = pattern;
+        }
+
+        @Override
+        public boolean accept(String tag) {
+            Boolean decision = mDecisions.get(tag);
+            if (null != decision) {
+                return decision;
+            }
+            boolean accept = mPattern.matcher(tag).find();
+            if (mSize.incrementAndGet() > MAX_CACHE_SIZE) {
+                mDecisions.clear();
+                mSize.set(1);
+            }
+            mDecisions.put(tag, accept);
+            return accept;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.df.dlogger.logger;
+
+import android.support.annotation.NonNull;
+
+import com.df.dlogger.constant.DLevel;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 写文件线程的统计，用于调整批量大小和等待时间.
+ * <p>
+ * 只由写文件线程更新，其它线程读取到的是近似值.
+ */
+public final class WriterStats {
+
+    /** 批量大小直方图的分段数：1, 2-3, 4-7, ... , 2048+ */
+    private static final int BUCKETS = 12;
+
+    private final AtomicLongArray mHistogram = new AtomicLongArray(BUCKETS);
+    /** 按等级累计丢弃的条数，下标为DLevel.ordinal() */
+    private final AtomicLongArray mDropped = new AtomicLongArray(DLevel.values().length);
+
+    private volatile long mFlushCount;
+    private volatile long mEventCount;
+    private volatile long mWakeupCount;
+    private volatile int mLastBatchSize;
+    private volatile int mMaxBatchSize;
+
+    WriterStats() {}
+
+    /**
+     * 记录一次写入
+     *
+     * @param events 本次写入的日志条数
+     */
+    void recordFlush(int events) {
+        mFlushCount++;
+        mEventCount += events;
+        mLastBatchSize = events;
+        if (events > mMaxBatchSize) {
+            mMaxBatchSize = events;
+        }
+        int bucket = Math.min(BUCKETS - 1, 31 - Integer.numberOfLeadingZeros(Math.max(1, events)));
+        mHistogram.incrementAndGet(bucket);
+    }
+
+    /**
+     * 记录一次丢弃汇总
+     *
+     * @param drops 按等级丢弃的条数
+     */
+    void recordDrops(long[] drops) {
+        for (int i = 0; i < drops.length; i++) {
+            if (drops[i] > 0) {
+                mDropped.addAndGet(i, drops[i]);
+            }
+        }
+    }
+
+    /**
+     * 记录写文件线程被唤醒一次
+     */
+    void recordWakeup() {
+        mWakeupCount++;
+    }
+
+    /**
+     * @return 写入文件的次数
+     */
+    public long getFlushCount() {
+        return mFlushCount;
+    }
+
+    /**
+     * @return 写入文件的日志总条数
+     */
+    public long getEventCount() {
+        return mEventCount;
+    }
+
+    /**
+     * @return 写文件线程从休眠中被唤醒的次数
+     */
+    public long getWakeupCount() {
+        return mWakeupCount;
+    }
+
+    /**
+     * @return 最近一次写入包含的日志条数
+     */
+    public int getLastBatchSize() {
+        return mLastBatchSize;
+    }
+
+    /**
+     * @return 单次写入包含的最多日志条数
+     */
+    public int getMaxBatchSize() {
+        return mMaxBatchSize;
+    }
+
+    /**
+     * @return 平均每次写入包含的日志条数
+     */
+    public double getAverageBatchSize() {
+        long flushCount = mFlushCount;
+        return 0 == flushCount ? 0 : (double) mEventCount / flushCount;
+    }
+
+    /**
+     * 批量大小的分布，第i个元素为批量大小在[2^i, 2^(i+1))之间的写入次数，最后一个包含更大的批量
+     *
+     * @return 直方图
+     */
+    public long[] getBatchHistogram() {
+        long[] histogram = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            histogram[i] = mHistogram.get(i);
+        }
+        return histogram;
+    }
+
+    /**
+     * 队列满时丢弃的条数，只包含已汇总写入文件的
+     *
+     * @param level 日志等级
+     * @return 条数
+     */
+    public long getDroppedCount(@NonNull DLevel level) {
+        return mDropped.get(level.ordinal());
+    }
+
+    /**
+     * @return 队列满时丢弃的总条数
+     */
+    public long getDroppedCount() {
+        long total = 0;
+        for (int i = 0; i < mDropped.length(); i++) {
+            total += mDropped.get(i);
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "WriterStats{flush=" + mFlushCount
+                + ", events=" + mEventCount
+                + ", wakeups=" + mWakeupCount
+                + ", lastBatch=" + mLastBatchSize
+                + ", maxBatch=" + mMaxBatchSize
+                + ", dropped=" + getDroppedCount()
+                + ", avgBatch=" + String.format(java.util.Locale.US, "%.1f", getAverageBatchSize())
+                + '}';
+    }
+}
@@ -0,0 +1,249 @@
+package com.df.dlogger.printer;
+
+import android.support.annotation.NonNull;
+
+import com.df.dlogger.constant.DLevel;
+import com.df.dlogger.logger.DSetting;
+import com.df.dlogger.util.RecoveryScanner;
+import com.df.dlogger.util.SysUtils;
+import com.df.dlogger.util.TimeFormatter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 把{@link com.df.dlogger.constant.DFileFormat#BINARY}格式的日志文件流式还原为文本格式: 时间-[等级 标签]- 信息.
+ * <p>
+ * 文件格式：文件头为4字节魔数"DLGB"和1字节版本，之后是连续的记录，每条记录以1字节类型开头:
+ * <ul>
+ * <li>SESSION：varint(zigzag时区偏移毫秒)，每次打开文件写入，清空标签字典和时间基准</li>
+ * <li>INFO：新文件的初始化信息，varint长度+UTF-8，原样输出</li>
+ * <li>TAG：varint编号+varint长度+UTF-8，编号从1开始</li>
+ * <li>EVENT：varint(zigzag与上一条的时间差毫秒)，1字节等级，varint标签编号(0表示后面直接跟标签)，varint长度+UTF-8信息</li>
+ * </ul>
+ * 文件末尾不完整的记录(例如进程被杀)会被忽略.
+ */
+public final class BinaryDecoder {
+
+    static final byte[] MAGIC = {'D', 'L', 'G', 'B'};
+    static final int VERSION = 1;
+
+    static final int RECORD_SESSION = 1;
+    static final int RECORD_INFO = 2;
+    static final int RECORD_TAG = 3;
+    static final int RECORD_EVENT = 4;
+
+    private static final String DEFAULT_TIME_FORMAT = "yyyy-MM-dd HH:mm:ss.SSS";
+    private static final String LINE_SEPARATOR = SysUtils.getLineSeparator();
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final InputStream mIn;
+    private final TimeFormatter mFormatter;
+    private final List<String> mTags = new ArrayList<>();
+    private final StringBuilder mLine = new StringBuilder(256);
+    private byte[] mBuffer = new byte[512];
+    private long mLastMillis;
+    private long mZoneOffset;
+    private boolean isHeaderRead;
+
+    /**
+     * @param in         二进制日志，压缩文件需要先包装为GZIPInputStream
+     * @param timeFormat 时间格式
+     */
+    public BinaryDecoder(@NonNull InputStream in, @NonNull String timeFormat) {
+        mIn = in;
+        mFormatter = TimeFormatter.get(timeFormat);
+    }
+
+    /**
+     * 还原整个文件，文件名以.gz结尾时先解压，去掉.gz后以.framed结尾时跳过损坏的记录帧.
+     *
+     * @param src        二进制日志文件
+     * @param dst        文本日志文件
+     * @param timeFormat 时间格式
+     * @throws IOException 读写失败或不是二进制日志
+     */
+    public static void decode(@NonNull File src, @NonNull File dst, @NonNull String timeFormat) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(src), 32 * 1024);
+        Writer out = null;
+        try {
+            String name = src.getName();
+            if (name.endsWith(SegmentCompressor.GZ_SUFFIX)) {
+                in = new GZIPInputStream(in, 32 * 1024);
+                name = name.substring(0, name.length() - SegmentCompressor.GZ_SUFFIX.length());
+            }
+            if (name.endsWith(DSetting.FRAMED_SUFFIX)) {
+                in = RecoveryScanner.openStream(in);
+            }
+            out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(dst), UTF_8), 32 * 1024);
+            new BinaryDecoder(in, timeFormat).decodeTo(out);
+        } finally {
+            in.close();
+            if (null != out) {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * 使用默认时间格式还原整个文件
+     *
+     * @see #decode(File, File, String)
+     */
+    public static void decode(@NonNull File src, @NonNull File dst) throws IOException {
+        decode(src, dst, DEFAULT_TIME_FORMAT);
+    }
+
+    /**
+     * 把剩余的记录全部还原并写入out.
+     *
+     * @param out 输出
+     * @return 还原的行数，不包括初始化信息
+     * @throws IOException 读写失败或不是二进制日志
+     */
+    public long decodeTo(@NonNull Writer out) throws IOException {
+        long count = 0;
+        CharSequence line;
+        while (null != (line = next())) {
+            out.append(line);
+            if (line == mLine) {
+                count++;
+            }
+        }
+        out.flush();
+        return count;
+    }
+
+    /**
+     * 读取下一条日志(已包含行分割符)或初始化信息.
+     *
+     * @return 文本，复用同一个StringBuilder；读完返回null
+     * @throws IOException 读取失败或不是二进制日志
+     */
+    public CharSequence next() throws IOException {
+        if (!isHeaderRead) {
+            readHeader();
+            isHeaderRead = true;
+        }
+        try {
+            while (true) {
+                int type = mIn.read();
+                switch (type) {
+                    case -1:
+                        return null;
+                    case RECORD_SESSION:
+                        mZoneOffset = unzigzag(readVarLong());
+                        mLastMillis = 0;
+                        mTags.clear();
+                        break;
+                    case RECORD_INFO:
+                        // 与文本格式相同，原样输出
+                        return readString();
+                    case RECORD_TAG:
+                        int id = (int) readVarLong();
+                        String tag = readString();
+                        while (mTags.size() < id) {
+                            mTags.add(null);
+                        }
+                        mTags.set(id - 1, tag);
+                        break;
+                    case RECORD_EVENT:
+                        return readEvent();
+                    default:
+                        throw new IOException("unknown record type " + type);
+                }
+            }
+        } catch (EOFException e) {
+            // 最后一条记录不完整
+            return null;
+        }
+    }
+
+    private CharSequence readEvent() throws IOException {
+        long millis = mLastMillis + unzigzag(readVarLong());
+        mLastMillis = millis;
+        DLevel[] levels = DLevel.values();
+        int level = readByte();
+        int id = (int) readVarLong();
+        String tag = 0 == id ? readString() : (id <= mTags.size() ? mTags.get(id - 1) : null);
+        mLine.setLength(0);
+        mFormatter.formatTo(millis + mZoneOffset, mLine);
+        mLine.append("-[").append(level < levels.length ? levels[level].name() : String.valueOf(level))
+                .append(' ').append(tag).append("]- ");
+        int length = (int) readVarLong();
+        readFully(length);
+        mLine.append(new String(mBuffer, 0, length, UTF_8)).append(LINE_SEPARATOR);
+        return mLine;
+    }
+
+    private void readHeader() throws IOException {
+        for (byte b : MAGIC) {
+            if (readByte() != (b & 0xFF)) {
+                throw new IOException("not a binary log");
+            }
+        }
+        int version = readByte();
+        if (version != VERSION) {
+            throw new IOException("unsupported version " + version);
+        }
+    }
+
+    private String readString() throws IOException {
+        int length = (int) readVarLong();
+        readFully(length);
+        return new String(mBuffer, 0, length, UTF_8);
+    }
+
+    private void readFully(int length) throws IOException {
+        if (length < 0) {
+            throw new IOException("bad length " + length);
+        }
+        if (length > mBuffer.length) {
+            mBuffer = new byte[Math.max(length, mBuffer.length * 2)];
+        }
+        int offset = 0;
+        while (offset < length) {
+            int n = mIn.read(mBuffer, offset, length - offset);
+            if (n < 0) {
+                throw new EOFException();
+            }
+            offset += n;
+        }
+    }
+
+    private int readByte() throws IOException {
+        int b = mIn.read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("bad varint");
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
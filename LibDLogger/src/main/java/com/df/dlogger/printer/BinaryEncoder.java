@@ -0,0 +1,165 @@
+package com.df.dlogger.printer;
+
+import android.support.annotation.NonNull;
+
+import com.df.dlogger.logger.LogEvent;
+import com.df.dlogger.util.FileAppender;
+
+import java.util.HashMap;
+
+/**
+ * 把日志编码为{@link BinaryDecoder}描述的二进制格式，标签字典和时间差按文件保存.
+ * <p>
+ * 非线程安全，只能在写文件线程中使用.
+ */
+final class BinaryEncoder {
+
+    /** 每个文件最多收录的标签数，超出后标签直接写在记录中 */
+    private static final int MAX_TAGS = 4096;
+    /** 编码缓冲超过该大小后重建，避免长期持有大对象 */
+    private static final int MAX_BUFFER_SIZE = 64 * 1024;
+
+    private final HashMap<String, Integer> mTags = new HashMap<>();
+    private long mLastMillis;
+    private byte[] mBuffer = new byte[512];
+    private int mLength;
+
+    /**
+     * 打开文件后调用，开始新的会话：清空标签字典和时间基准.
+     *
+     * @param appender   已打开的文件
+     * @param isNew      是否为新文件，新文件先写入文件头
+     * @param zoneOffset 时区偏移，解码时使用
+     * @param info       新文件的初始化信息
+     */
+    void begin(@NonNull FileAppender appender, boolean isNew, long zoneOffset, String info) {
+        mTags.clear();
+        mLastMillis = 0;
+        mLength = 0;
+        if (isNew) {
+            ensure(BinaryDecoder.MAGIC.length + 1);
+            System.arraycopy(BinaryDecoder.MAGIC, 0, mBuffer, 0, BinaryDecoder.MAGIC.length);
+            mLength = BinaryDecoder.MAGIC.length;
+            putByte(BinaryDecoder.VERSION);
+        }
+        putByte(BinaryDecoder.RECORD_SESSION);
+        putVarLong(zigzag(zoneOffset));
+        if (isNew && null != info) {
+            putByte(BinaryDecoder.RECORD_INFO);
+            putString(info);
+        }
+        appender.append(mBuffer, 0, mLength);
+    }
+
+    /**
+     * 编码一条日志，标签第一次出现时先写入字典记录.
+     *
+     * @param appender 已打开的文件
+     * @param event    日志
+     */
+    void write(@NonNull FileAppender appender, @NonNull LogEvent event) {
+        mLength = 0;
+        String tag = String.valueOf(event.getTag());
+        Integer id = mTags.get(tag);
+        if (null == id && mTags.size() < MAX_TAGS) {
+            id = mTags.size() + 1;
+            mTags.put(tag, id);
+            putByte(BinaryDecoder.RECORD_TAG);
+            putVarLong(id);
+            putString(tag);
+        }
+        long millis = event.getTimeMillis();
+        putByte(BinaryDecoder.RECORD_EVENT);
+        putVarLong(zigzag(millis - mLastMillis));
+        mLastMillis = millis;
+        putByte(event.getLevel().ordinal());
+        if (null == id) {
+            putVarLong(0);
+            putString(tag);
+        } else {
+            putVarLong(id);
+        }
+        putString(event.getMessage());
+        appender.append(mBuffer, 0, mLength);
+        if (mBuffer.length > MAX_BUFFER_SIZE) {
+            mBuffer = new byte[512];
+        }
+    }
+
+    private static boolean isSurrogate(char c) {
+        return c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private void ensure(int extra) {
+        if (mLength + extra > mBuffer.length) {
+            byte[] buffer = new byte[Math.max(mBuffer.length * 2, mLength + extra)];
+            System.arraycopy(mBuffer, 0, buffer, 0, mLength);
+            mBuffer = buffer;
+        }
+    }
+
+    private void putByte(int value) {
+        ensure(1);
+        mBuffer[mLength++] = (byte) value;
+    }
+
+    private void putVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            mBuffer[mLength++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        mBuffer[mLength++] = (byte) value;
+    }
+
+    /**
+     * 写入UTF-8长度和内容，不成对的代理字符写为'?'
+     */
+    private void putString(CharSequence s) {
+        int count = s.length();
+        int bytes = 0;
+        for (int i = 0; i < count; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(s.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += isSurrogate(c) ? 1 : 3;
+            }
+        }
+        putVarLong(bytes);
+        ensure(bytes);
+        byte[] b = mBuffer;
+        int p = mLength;
+        for (int i = 0; i < count; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                b[p++] = (byte) c;
+            } else if (c < 0x800) {
+                b[p++] = (byte) (0xC0 | (c >> 6));
+                b[p++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                b[p++] = (byte) (0xF0 | (cp >> 18));
+                b[p++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                b[p++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                b[p++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (isSurrogate(c)) {
+                b[p++] = '?';
+            } else {
+                b[p++] = (byte) (0xE0 | (c >> 12));
+                b[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                b[p++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        mLength = p;
+    }
+}
@@ -0,0 +1,103 @@
+package com.df.dlogger.printer;
+
+/**
+ * 日志文件压缩的统计，用于选择压缩等级.
+ * <p>
+ * 只由压缩线程更新，其它线程读取到的是近似值.
+ */
+public final class CompressStats {
+
+    private volatile long mFileCount;
+    private volatile long mFailCount;
+    private volatile long mInputBytes;
+    private volatile long mOutputBytes;
+    private volatile long mCpuMillis;
+    private volatile long mWallMillis;
+
+    CompressStats() {}
+
+    /**
+     * 记录压缩成功一个文件
+     *
+     * @param inputBytes  压缩前大小
+     * @param outputBytes 压缩后大小
+     * @param cpuMillis   压缩线程占用的CPU时间
+     * @param wallMillis  压缩耗时
+     */
+    void recordFile(long inputBytes, long outputBytes, long cpuMillis, long wallMillis) {
+        mFileCount++;
+        mInputBytes += inputBytes;
+        mOutputBytes += outputBytes;
+        mCpuMillis += cpuMillis;
+        mWallMillis += wallMillis;
+    }
+
+    /**
+     * 记录压缩失败一个文件
+     */
+    void recordFail() {
+        mFailCount++;
+    }
+
+    /**
+     * @return 压缩成功的文件个数
+     */
+    public long getFileCount() {
+        return mFileCount;
+    }
+
+    /**
+     * @return 压缩失败的文件个数
+     */
+    public long getFailCount() {
+        return mFailCount;
+    }
+
+    /**
+     * @return 压缩前的总字节数
+     */
+    public long getInputBytes() {
+        return mInputBytes;
+    }
+
+    /**
+     * @return 压缩后的总字节数
+     */
+    public long getOutputBytes() {
+        return mOutputBytes;
+    }
+
+    /**
+     * @return 压缩占用的CPU时间，单位毫秒
+     */
+    public long getCpuMillis() {
+        return mCpuMillis;
+    }
+
+    /**
+     * @return 压缩耗时，单位毫秒
+     */
+    public long getWallMillis() {
+        return mWallMillis;
+    }
+
+    /**
+     * @return 压缩率，压缩后大小/压缩前大小
+     */
+    public double getRatio() {
+        long input = mInputBytes;
+        return 0 == input ? 0 : (double) mOutputBytes / input;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressStats{files=" + mFileCount
+                + ", fails=" + mFailCount
+                + ", in=" + mInputBytes
+                + ", out=" + mOutputBytes
+                + ", ratio=" + String.format(java.util.Locale.US, "%.3f", getRatio())
+                + ", cpuMs=" + mCpuMillis
+                + ", wallMs=" + mWallMillis
+                + '}';
+    }
+}
@@ -4,6 +4,11 @@ import android.support.annotation.NonNull;
 import android.util.Log;
 
 import com.df.dlogger.constant.DLevel;
+import com.df.dlogger.logger.ConsoleSink;
+import com.df.dlogger.logger.DLog;
+import com.df.dlogger.logger.LogEvent;
+import com.df.dlogger.logger.LogGate;
+import com.df.dlogger.util.LogChunker;
 
 /**
  * 输出都控制台
@@ -18,8 +23,26 @@ public class ConsolePrinter implements Printer {
         log(level, tag, message);
     }
 
-    /** logcat里日志的最大长度. */
-    private static final int MAX_LOG_LENGTH = 4000;
+    @Override
+    public void print(@NonNull LogEvent event) {
+        printConsole(event);
+        event.recycle();
+    }
+
+    /**
+     * 交给DLog的控制台输出，按其等级和标签过滤，异步时不在调用线程中输出；不需要输出时不会生成消息内容
+     *
+     * @param event 日志
+     */
+    protected void printConsole(@NonNull LogEvent event) {
+        ConsoleSink console = DLog.getInstance().getConsole();
+        if (console.isLoggable(event.getLevel(), event.getTag())) {
+            console.print(event.getLevel(), event.getTag(), event.getMessageString());
+        }
+    }
+
+    /** logcat里日志的最大字节数. */
+    private static final int MAX_LOG_BYTES = LogChunker.MAX_BYTES;
 
     private static boolean LOG_V = true;
     private static boolean LOG_D = true;
@@ -35,29 +58,55 @@ public class ConsolePrinter implements Printer {
      */
     public static void setLog(boolean enable) {
         LOG_V = LOG_D = LOG_I = LOG_W = LOG_E = LOG_WTF = enable;
+        LogGate.setConsole(enable);
     }
 
 
     /**
-     * 使用LogCat输出日志，字符长度超过4000则自动换行.
+     * 判断控制台是否输出该等级的日志
+     *
+     * @param level 级别
+     * @return true 输出
+     */
+    public static boolean isLoggable(@NonNull DLevel level) {
+        switch (level) {
+            case VERBOSE:
+                return LOG_V;
+            case DEBUG:
+                return LOG_D;
+            case INFO:
+                return LOG_I;
+            case WARN:
+                return LOG_W;
+            case ERROR:
+                return LOG_E;
+            case WTF:
+                return LOG_WTF;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 使用LogCat输出日志，超过logcat的字节上限时切分为多条，尽量在换行处切分.
      *
      * @param level   级别
      * @param tag     标签
      * @param message 信息
      */
     public static void log(@NonNull DLevel level, @NonNull String tag, @NonNull String message) {
-        int subNum = message.length() / MAX_LOG_LENGTH;
-        if (subNum > 0) {
-            int index = 0;
-            for (int i = 0; i < subNum; i++) {
-                int lastIndex = index + MAX_LOG_LENGTH;
-                String sub = message.substring(index, lastIndex);
-                logSub(level, tag, sub);
-                index = lastIndex;
-            }
-            // logSub(level, tag, message.substring(index, message.length()));
-        } else {
+        if (LogChunker.fits(message, MAX_LOG_BYTES)) {
             logSub(level, tag, message);
+            return;
+        }
+        int length = message.length();
+        int start = 0;
+        while (start < length) {
+            int end = LogChunker.next(message, start, MAX_LOG_BYTES);
+            // 换行处切分时去掉块末尾的换行符，避免多出空行
+            int last = end < length && end > start + 1 && '\n' == message.charAt(end - 1) ? end - 1 : end;
+            logSub(level, tag, message.substring(start, last));
+            start = end;
         }
     }
 
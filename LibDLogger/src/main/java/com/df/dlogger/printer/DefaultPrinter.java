@@ -17,20 +17,23 @@
 package com.df.dlogger.printer;
 
 
-import android.os.Environment;
 import android.support.annotation.NonNull;
-import android.text.TextUtils;
+import android.util.Log;
 
+import com.df.dlogger.constant.DFileFormat;
 import com.df.dlogger.constant.DLevel;
-import com.df.dlogger.constant.DSegment;
 import com.df.dlogger.logger.DSetting;
+import com.df.dlogger.logger.LogEvent;
+import com.df.dlogger.util.FileAppender;
 import com.df.dlogger.util.FileUtils;
+import com.df.dlogger.util.MmapBuffer;
 import com.df.dlogger.util.SysUtils;
+import com.df.dlogger.util.TimeFormatter;
 import com.df.dlogger.util.TimeUtils;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.nio.charset.Charset;
 
 /**
  * 默认输出，会输出到控制台和文件
@@ -41,15 +44,43 @@ import java.util.List;
 public class DefaultPrinter extends ConsolePrinter {
 
 
+    private static final String TAG = "DefaultPrinter";
+
     /** 行分割符号 */
     private static final String LINE_SEPARATOR = SysUtils.getLineSeparator();
 
-    /** 文件中保存的内容格式. */
-    private static final String PRINT_FILE_FORMAT = "%1$s-[%2$s %3$s]- %4$s" + LINE_SEPARATOR;
+    /** 文件中保存的内容格式: 时间-[等级 标签]- 信息 */
+    private static final String LEVEL_START = "-[";
+    private static final String LEVEL_END = "]- ";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** 内存映射文件名，放在日志目录下 */
+    public static final String MMAP_FILE_NAME = ".dlogger.mmap";
 
     /** 日志设定 */
     private DSetting mDSetting;
 
+    /** 当前日志文件，只在写文件线程中使用 */
+    private final FileAppender mAppender = new FileAppender();
+    /** 当前切片，只在写文件线程中使用 */
+    private final SegmentRoller mRoller = new SegmentRoller();
+    /** 过期日志清理 */
+    private final RetentionSweeper mSweeper = new RetentionSweeper();
+    /** 二进制格式编码 */
+    private final BinaryEncoder mEncoder = new BinaryEncoder();
+    /** JSON Lines格式编码 */
+    private final JsonEncoder mJsonEncoder = new JsonEncoder();
+    /** 最近一次写入文件头时的打开次数 */
+    private long mOpenCount;
+    /** 按DSetting版本缓存的字符集，只在写文件线程中使用 */
+    private Charset mCharset;
+    private DSetting mCharsetSetting;
+    private int mCharsetVersion;
+    /** 内存映射文件所在的目录，只在写文件线程中使用 */
+    private String mMmapDir;
+    private int mMmapSize;
+
     public DefaultPrinter(@NonNull DSetting setting) {
         mDSetting = setting;
     }
@@ -61,123 +92,192 @@ public class DefaultPrinter extends ConsolePrinter {
 
     @Override
     public void print(@NonNull DLevel level, String tag, String message) {
-        super.print(level, tag, message);
-        synchronized (Printer.class) {
-            printFile(decorateMsgForFile(level, tag, message));
-        }
+        print(LogEvent.obtain(level, tag).setContent(message));
+    }
+
+    @Override
+    public void print(@NonNull LogEvent event) {
+        printConsole(event);
+        FileUtils.execute(() -> {
+            write(event);
+            flush();
+            event.recycle();
+        });
     }
 
     /**
-     * 装饰打印到文件的信息.
+     * 把日志编码到写入缓冲区，调用{@link #flush()}后才真正写入文件;
+     * 同一个DefaultPrinter只能在一个写文件线程中调用.
      *
-     * @param level   级别
-     * @param message 信息
-     * @return 装饰后的信息
+     * @param event 日志
      */
-    private String decorateMsgForFile(@NonNull DLevel level, @NonNull String tag, String message) {
-        String time = TimeUtils.getCurTime();
-        return String.format(PRINT_FILE_FORMAT, time, level, tag, message);
+    public void write(@NonNull LogEvent event) {
+        boolean isRolled = false;
+        if (mRoller.roll(mDSetting, event.getTimeMillis())) {
+            updateMmap(mRoller.getDirPath());
+            isRolled = true;
+        } else if (mDSetting.getMaxFileSize() > 0 && mAppender.getFileSize() >= mDSetting.getMaxFileSize()) {
+            mRoller.rollBySize();
+            isRolled = true;
+        }
+        if (!isRolled) {
+            writeFile(mRoller.getDirPath(), mRoller.getFileName(), event);
+            return;
+        }
+        // 旧文件在writeFile中关闭之后才交给后台清理和压缩
+        String closedPath = mAppender.getFilePath();
+        long closedSize = mAppender.getFileSize();
+        writeFile(mRoller.getDirPath(), mRoller.getFileName(), event);
+        mSweeper.request(mDSetting, mRoller.getDirPath(), mRoller.getFileName(), closedPath, closedSize);
     }
 
     /**
-     * 日志打印输出到文件.
-     *
-     * @param message 信息
+     * @return 已关闭日志文件的压缩统计
      */
-    private void printFile(@NonNull String message) {
-        String dirPath = genDirPath();
-        String fileName = genFileName();
+    public CompressStats getCompressStats() {
+        return mSweeper.getCompressStats();
+    }
 
-        if (!FileUtils.isExist(dirPath + File.separator + fileName)) {
-            message = mDSetting.getInfo() + message;
-            delUselessLogs();
-        }
+    /**
+     * 把缓冲区中的日志一次写入文件，只能在写文件线程中调用.
+     */
+    public void flush() {
+        mAppender.flush();
+    }
 
-        FileUtils.write(dirPath, fileName, message, false);
+    /**
+     * 把内存映射文件中的日志也写入文件，只能在写文件线程中调用.
+     */
+    public void sync() {
+        mAppender.sync();
     }
 
     /**
-     * 生成日志目录路径.
+     * 装饰打印到文件的信息，写入event的文本缓存中.
      *
-     * @return 日志目录路径
+     * @param event 日志
+     * @return 装饰后的信息
      */
-    private String genDirPath() {
-        String dir = mDSetting.getLogDir();
-        return Environment.getExternalStorageDirectory().getAbsolutePath() + File.separator + dir;
+    private CharSequence decorateMsgForFile(@NonNull LogEvent event) {
+        StringBuilder text = event.getText();
+        long millis = TimeUtils.getZoneMillis(event.getTimeMillis(), mDSetting.getZoneOffset());
+        TimeFormatter.get(mDSetting.getTimeFormat()).formatTo(millis, text);
+        return text.append(LEVEL_START).append(event.getLevel().name())
+                .append(' ').append(event.getTag())
+                .append(LEVEL_END).append(event.getMessage())
+                .append(LINE_SEPARATOR);
     }
 
     /**
-     * 生成日志文件名.
+     * 追加写入日志文件，与当前打开的文件相同时直接写入缓冲区;
+     * 打开文件后先写入文件头(二进制格式每次打开都开始新的会话)；带记录帧时文件头和每条日志各占一帧；
+     * JSON Lines格式总是使用UTF-8；
+     * 只能在写文件线程中调用.
      *
-     * @return 日志文件名
+     * @param dirPath  目录路径
+     * @param fileName 文件名
+     * @param event    日志
      */
-    private String genFileName() {
-        String logPrefix = mDSetting.getLogPrefix();
-        String logSuffix = mDSetting.getLogSuffix();
-        logPrefix = TextUtils.isEmpty(logPrefix) ? "" : logPrefix + "_";
-        String curDate = TimeUtils.getCurDate();
-        String fileName;
-        if (mDSetting.getLogSegment() == DSegment.TWENTY_FOUR_HOURS) {
-            fileName = logPrefix + curDate + logSuffix;
+    private void writeFile(@NonNull String dirPath, @NonNull String fileName, @NonNull LogEvent event) {
+        Charset charset = charset();
+        DFileFormat format = mDSetting.getFileFormat();
+        boolean isBinary = DFileFormat.BINARY == format;
+        boolean isJson = DFileFormat.JSON_LINES == format;
+        boolean isFramed = mDSetting.isFramed();
+        try {
+            boolean isNew = mAppender.open(dirPath, fileName);
+            if (mAppender.getOpenCount() != mOpenCount) {
+                mOpenCount = mAppender.getOpenCount();
+                if (isBinary) {
+                    beginRecord(isFramed);
+                    mEncoder.begin(mAppender, isNew, mDSetting.getZoneOffset().getValue(), mDSetting.getInfo());
+                    endRecord(isFramed);
+                } else if (isNew && isJson) {
+                    beginRecord(isFramed);
+                    mJsonEncoder.begin(mAppender, mDSetting.getInfo());
+                    endRecord(isFramed);
+                } else if (isNew) {
+                    beginRecord(isFramed);
+                    mAppender.append(mDSetting.getInfo(), charset);
+                    endRecord(isFramed);
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "writeFile(...)#catch", e);
+            return;
+        }
+        beginRecord(isFramed);
+        if (isBinary) {
+            mEncoder.write(mAppender, event);
+        } else if (isJson) {
+            mJsonEncoder.write(mAppender, event);
         } else {
-            fileName = logPrefix + curDate + "_" + getCurSegment() + logSuffix;
+            mAppender.append(decorateMsgForFile(event), charset);
         }
-        return fileName;
+        endRecord(isFramed);
     }
 
     /**
-     * 根据切片时间获取当前的时间段.
+     * DSetting变化后才重新查找字符集，名称无效时使用UTF-8.
      *
-     * @return 比如“0001”表示00:00-01:00
+     * @return 日志文件字符集
      */
-    private String getCurSegment() {
-        int hour = TimeUtils.getCurHour();
-        DSegment logSegment = mDSetting.getLogSegment();
-        int segmentValue = logSegment.getValue();
-        int start = hour - hour % segmentValue;
-        int end = start + segmentValue;
-        if (end == 24) {
-            end = 0;
+    private Charset charset() {
+        DSetting setting = mDSetting;
+        if (null != mCharset && setting == mCharsetSetting && setting.getVersion() == mCharsetVersion) {
+            return mCharset;
         }
-        return getDoubleNum(start) + getDoubleNum(end);
+        // 先取版本，查找期间被修改时下一条日志会再次查找
+        mCharsetVersion = setting.getVersion();
+        mCharsetSetting = setting;
+        try {
+            mCharset = Charset.forName(setting.getCharset());
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "charset()#catch", e);
+            mCharset = UTF_8;
+        }
+        return mCharset;
     }
 
-    /**
-     * 对于1-9的数值进行前置补0.
-     *
-     * @param num 数值
-     * @return num在[0, 9]时前置补0，否则返回原值
-     */
-    private String getDoubleNum(int num) {
-        return num < 10 ? "0" + num : String.valueOf(num);
+    private void beginRecord(boolean isFramed) {
+        if (isFramed) {
+            mAppender.beginRecord();
+        }
+    }
+
+    private void endRecord(boolean isFramed) {
+        if (isFramed) {
+            mAppender.endRecord();
+        }
     }
 
     /**
-     * 删除过期的日志文件
-     * Touch -l 201511111111 Filename
-     * 意思是时间修改为2015年11月11日11点11时
+     * 按设定打开或关闭内存映射文件，打开时会先恢复上次没有写入日志文件的内容;
+     * 只在切片或DSetting变化时调用.
+     *
+     * @param dirPath 日志目录路径
      */
-    private void delUselessLogs() {
-        int retainDays = mDSetting.getRetainDays();
-        if (retainDays < 1) return;
-
-        File fileDir = new File(genDirPath());
-        if (!fileDir.exists() || fileDir.isFile()) return;
-
-        File[] files = fileDir.listFiles();
-        if (null == files || files.length < 1) return;
-
-        long day = 24 * 3600 * 1000;
-        long time = TimeUtils.getCurMillis() - day * retainDays;
-        List<String> need2del = new ArrayList<>();
-        for (File file : files) {
-            if (file.lastModified() < time) {
-                need2del.add(file.getAbsolutePath());
+    private void updateMmap(@NonNull String dirPath) {
+        if (!mDSetting.isMmapMode()) {
+            if (null != mMmapDir) {
+                mAppender.setMmap(null);
+                mMmapDir = null;
             }
+            return;
+        }
+        // 打开失败时同一目录不再重试
+        if (dirPath.equals(mMmapDir) && mMmapSize == mDSetting.getMmapSize()) return;
+        mAppender.setMmap(null);
+        mMmapDir = dirPath;
+        mMmapSize = mDSetting.getMmapSize();
+        if (!FileUtils.createDir(dirPath)) return;
+        try {
+            mAppender.setMmap(MmapBuffer.open(new File(dirPath, MMAP_FILE_NAME), mDSetting.getMmapSize()));
+        } catch (IOException e) {
+            Log.e(TAG, "updateMmap(...)#catch", e);
         }
-
-        FileUtils.delFile(need2del);
     }
 
 
+
 }
\ No newline at end of file
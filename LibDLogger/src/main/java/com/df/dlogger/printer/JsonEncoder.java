@@ -0,0 +1,229 @@
+package com.df.dlogger.printer;
+
+import android.support.annotation.NonNull;
+
+import com.df.dlogger.logger.LogEvent;
+import com.df.dlogger.logger.LogFields;
+import com.df.dlogger.util.FileAppender;
+
+/**
+ * 把日志编码为JSON Lines，每条日志一行:
+ * <pre>
+ * {"ts":1476000000000,"level":"INFO","tag":"Main","thread":1,"msg":"login","fields":{"userId":42,"latencyMs":3.2}}
+ * </pre>
+ * ts为UTC毫秒；结构化日志的字段放在单独的fields对象中，不会与ts、msg等重名，没有字段时不写;
+ * 字段按类型写为数字、布尔值或字符串，NaN和无穷大写为字符串. 总是使用UTF-8，
+ * 不成对的代理字符写为'?'.
+ * <p>
+ * 非线程安全，只能在写文件线程中使用.
+ */
+final class JsonEncoder {
+
+    /** 编码缓冲超过该大小后重建，避免长期持有大对象 */
+    private static final int MAX_BUFFER_SIZE = 64 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private byte[] mBuffer = new byte[512];
+    private int mLength;
+    /** 格式化double使用 */
+    private final StringBuilder mNumber = new StringBuilder(32);
+
+    /**
+     * 新文件的初始化信息写为一行{"info":"..."}
+     *
+     * @param appender 已打开的文件
+     * @param info     初始化信息
+     */
+    void begin(@NonNull FileAppender appender, String info) {
+        if (null == info) return;
+        mLength = 0;
+        putAscii("{\"info\":");
+        putString(info);
+        putAscii("}\n");
+        appender.append(mBuffer, 0, mLength);
+    }
+
+    /**
+     * 编码一条日志，消息不包含字段
+     *
+     * @param appender 已打开的文件
+     * @param event    日志
+     */
+    void write(@NonNull FileAppender appender, @NonNull LogEvent event) {
+        mLength = 0;
+        LogFields fields = event.getFields();
+        putAscii("{\"ts\":");
+        putLong(event.getTimeMillis());
+        putAscii(",\"level\":\"");
+        putAscii(event.getLevel().name());
+        putAscii("\",\"tag\":");
+        putString(String.valueOf(event.getTag()));
+        putAscii(",\"thread\":");
+        putLong(event.getThreadId());
+        putAscii(",\"msg\":");
+        putString(0 == fields.size() ? event.getMessage() : event.appendMessage(event.getText(), false));
+        if (fields.size() > 0) {
+            putAscii(",\"fields\":{");
+        }
+        for (int i = 0, size = fields.size(); i < size; i++) {
+            if (i > 0) {
+                putByte(',');
+            }
+            putString(fields.getKey(i));
+            putByte(':');
+            switch (fields.getType(i)) {
+                case LogFields.TYPE_LONG:
+                    putLong(fields.getLong(i));
+                    break;
+                case LogFields.TYPE_DOUBLE:
+                    putDouble(fields.getDouble(i));
+                    break;
+                case LogFields.TYPE_BOOLEAN:
+                    putAscii(fields.getBoolean(i) ? "true" : "false");
+                    break;
+                default:
+                    String value = fields.getString(i);
+                    if (null == value) {
+                        putAscii("null");
+                    } else {
+                        putString(value);
+                    }
+                    break;
+            }
+        }
+        putAscii(fields.size() > 0 ? "}}\n" : "}\n");
+        appender.append(mBuffer, 0, mLength);
+        if (mBuffer.length > MAX_BUFFER_SIZE) {
+            mBuffer = new byte[512];
+        }
+    }
+
+    private static boolean isSurrogate(char c) {
+        return c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE;
+    }
+
+    private void ensure(int extra) {
+        if (mLength + extra > mBuffer.length) {
+            byte[] buffer = new byte[Math.max(mBuffer.length * 2, mLength + extra)];
+            System.arraycopy(mBuffer, 0, buffer, 0, mLength);
+            mBuffer = buffer;
+        }
+    }
+
+    private void putByte(int value) {
+        ensure(1);
+        mBuffer[mLength++] = (byte) value;
+    }
+
+    /**
+     * 写入不需要转义的ASCII内容
+     */
+    private void putAscii(CharSequence s) {
+        int count = s.length();
+        ensure(count);
+        for (int i = 0; i < count; i++) {
+            mBuffer[mLength++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void putLong(long value) {
+        if (Long.MIN_VALUE == value) {
+            putAscii("-9223372036854775808");
+            return;
+        }
+        ensure(20);
+        if (value < 0) {
+            mBuffer[mLength++] = '-';
+            value = -value;
+        }
+        int start = mLength;
+        do {
+            mBuffer[mLength++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        // 逆序写入的数字翻转
+        for (int i = start, j = mLength - 1; i < j; i++, j--) {
+            byte b = mBuffer[i];
+            mBuffer[i] = mBuffer[j];
+            mBuffer[j] = b;
+        }
+    }
+
+    private void putDouble(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            putByte('"');
+            putAscii(Double.toString(value));
+            putByte('"');
+            return;
+        }
+        if (value == (long) value && Math.abs(value) < 1e15) {
+            putLong((long) value);
+            return;
+        }
+        mNumber.setLength(0);
+        putAscii(mNumber.append(value));
+    }
+
+    /**
+     * 写入带引号和转义的UTF-8字符串
+     */
+    private void putString(CharSequence s) {
+        int count = s.length();
+        // 每个char最多6字节(\\u00XX)，代理对4字节
+        ensure(count * 6 + 2);
+        byte[] b = mBuffer;
+        int p = mLength;
+        b[p++] = '"';
+        for (int i = 0; i < count; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    b[p++] = (byte) c;
+                    continue;
+                }
+                b[p++] = '\\';
+                switch (c) {
+                    case '"':
+                        b[p++] = '"';
+                        break;
+                    case '\\':
+                        b[p++] = '\\';
+                        break;
+                    case '\n':
+                        b[p++] = 'n';
+                        break;
+                    case '\r':
+                        b[p++] = 'r';
+                        break;
+                    case '\t':
+                        b[p++] = 't';
+                        break;
+                    default:
+                        b[p++] = 'u';
+                        b[p++] = '0';
+                        b[p++] = '0';
+                        b[p++] = (byte) HEX[c >> 4];
+                        b[p++] = (byte) HEX[c & 0xF];
+                        break;
+                }
+            } else if (c < 0x800) {
+                b[p++] = (byte) (0xC0 | (c >> 6));
+                b[p++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                b[p++] = (byte) (0xF0 | (cp >> 18));
+                b[p++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                b[p++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                b[p++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (isSurrogate(c)) {
+                b[p++] = '?';
+            } else {
+                b[p++] = (byte) (0xE0 | (c >> 12));
+                b[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                b[p++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        b[p++] = '"';
+        mLength = p;
+    }
+}
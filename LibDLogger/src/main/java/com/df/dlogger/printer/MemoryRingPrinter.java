@@ -0,0 +1,419 @@
+package com.df.dlogger.printer;
+
+import android.support.annotation.NonNull;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.df.dlogger.constant.DLevel;
+import com.df.dlogger.logger.DSetting;
+import com.df.dlogger.util.FileUtils;
+import com.df.dlogger.util.SysUtils;
+import com.df.dlogger.util.TimeFormatter;
+import com.df.dlogger.util.TimeUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 只保存在内存中的日志，平时不写文件，{@link #dump()}时才把最近一段时间的日志写入日志目录.
+ * <p>
+ * 日志按文件格式(时间-[等级 标签]- 信息)编码为UTF-8，保存在固定大小的直接内存环形缓冲区中，写满后覆盖最早的日志;
+ * 每条记录为4字节长度+8字节时间+内容，单条超过容量一半时截断，标签过长时行首也会截断. 编码时复用同一个StringBuilder，不产生临时对象.
+ * <p>
+ * 收到不低于{@link #setDumpLevel}等级的日志时自动dump，两次自动dump至少间隔{@link #setMinDumpInterval}；
+ * dump在写文件线程中进行：先拷贝到同样大小的第二块直接内存并清空环形缓冲区，再写入文件，
+ * 文件名为 prefix_dump_日期_时间 加上logSuffix.
+ * <p>
+ * 通过{@link com.df.dlogger.logger.DLog#addPrinter}添加后即可接收全部等级的日志，
+ * 也可通过{@link com.df.dlogger.logger.DLog#dump()}触发.
+ */
+public class MemoryRingPrinter implements Printer {
+
+    private static final String TAG = "MemoryRingPrinter";
+
+    /** 行分割符号 */
+    private static final String LINE_SEPARATOR = SysUtils.getLineSeparator();
+    private static final String LEVEL_START = "-[";
+    private static final String LEVEL_END = "]- ";
+    /** 截断的日志末尾追加的标记 */
+    private static final String TRUNCATED = "...[truncated]";
+    /** dump文件名中的时间格式 */
+    private static final String DUMP_TIME_FORMAT = "yyyy-MM-dd_HHmmss.SSS";
+
+    /** 记录头：长度+时间 */
+    private static final int RECORD_HEADER = 12;
+    /** 最小容量 */
+    private static final int MIN_CAPACITY = 16 * 1024;
+
+    private DSetting mDSetting;
+    private final ByteBuffer mRing;
+    private final int mCapacity;
+    /** dump时使用的第二块缓冲区，第一次dump时创建 */
+    private ByteBuffer mDumpBuffer;
+
+    /** 最早一条记录的位置 */
+    private int mHead;
+    /** 下一条记录的写入位置 */
+    private int mTail;
+    /** 已使用的字节数 */
+    private int mUsed;
+    /** 编码行首的时间、等级和标签 */
+    private final StringBuilder mLine = new StringBuilder(128);
+
+    private volatile DLevel mDumpLevel = DLevel.ERROR;
+    private volatile long mMinDumpInterval = 10_000;
+    private volatile long mWindowMillis = 60_000;
+    /** 上次自动dump的时间 */
+    private long mLastDumpMillis;
+    /** 保证同一时间只有一个dump使用mDumpBuffer */
+    private final Object mDumpLock = new Object();
+    /** 已提交的dump还未完成 */
+    private final AtomicBoolean isDumping = new AtomicBoolean();
+
+    /**
+     * @param setting  日志设定，决定dump的目录、文件名和时间格式
+     * @param capacity 环形缓冲区的字节数
+     */
+    public MemoryRingPrinter(@NonNull DSetting setting, int capacity) {
+        mDSetting = setting;
+        mCapacity = Math.max(MIN_CAPACITY, capacity);
+        mRing = ByteBuffer.allocateDirect(mCapacity);
+    }
+
+    public void setDSetting(@NonNull DSetting setting) {
+        mDSetting = setting;
+    }
+
+    /**
+     * 设定自动dump的等级
+     *
+     * @param level 不低于该等级的日志触发dump，NONE则只能手动dump
+     * @return MemoryRingPrinter
+     */
+    public MemoryRingPrinter setDumpLevel(@NonNull DLevel level) {
+        mDumpLevel = level;
+        return this;
+    }
+
+    /**
+     * 设定两次自动dump的最小间隔，期间的日志留到下次dump
+     *
+     * @param millis 毫秒
+     * @return MemoryRingPrinter
+     */
+    public MemoryRingPrinter setMinDumpInterval(long millis) {
+        mMinDumpInterval = millis;
+        return this;
+    }
+
+    /**
+     * 设定dump的时间范围，更早的日志不写入文件
+     *
+     * @param millis 毫秒，0表示缓冲区中的全部日志
+     * @return MemoryRingPrinter
+     */
+    public MemoryRingPrinter setWindowMillis(long millis) {
+        mWindowMillis = millis;
+        return this;
+    }
+
+    /**
+     * @return 环形缓冲区的字节数
+     */
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    @Override
+    public void print(@NonNull DLevel level, String tag, String message) {
+        long now = System.currentTimeMillis();
+        boolean isDump;
+        synchronized (this) {
+            append(now, level, tag, String.valueOf(message));
+            DLevel dumpLevel = mDumpLevel;
+            isDump = DLevel.NONE != dumpLevel && dumpLevel.isEnable(level)
+                    && now - mLastDumpMillis >= mMinDumpInterval;
+            if (isDump) {
+                mLastDumpMillis = now;
+            }
+        }
+        if (isDump) {
+            dump();
+        }
+    }
+
+    /**
+     * 在写文件线程中把最近的日志写入日志目录，之后清空缓冲区；上一次dump还未完成时不处理.
+     *
+     * @return true - 已提交
+     */
+    public boolean dump() {
+        if (!isDumping.compareAndSet(false, true)) return false;
+        FileUtils.execute(() -> {
+            try {
+                dumpSync();
+            } finally {
+                isDumping.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 在当前线程把最近的日志写入日志目录，之后清空缓冲区，用于进程即将退出时.
+     *
+     * @return dump文件，没有日志或写入失败时为null
+     */
+    public File dumpSync() {
+        synchronized (mDumpLock) {
+            DSetting setting = mDSetting;
+            ByteBuffer buffer;
+            synchronized (this) {
+                if (0 == mUsed) return null;
+                if (null == mDumpBuffer) {
+                    mDumpBuffer = ByteBuffer.allocateDirect(mCapacity);
+                }
+                buffer = mDumpBuffer;
+                buffer.clear();
+                long window = mWindowMillis;
+                long from = window > 0 ? System.currentTimeMillis() - window : Long.MIN_VALUE;
+                while (mUsed > 0) {
+                    int length = getInt(mHead);
+                    long millis = getLong(offset(mHead, 4));
+                    int start = offset(mHead, RECORD_HEADER);
+                    if (millis >= from) {
+                        copy(start, length, buffer);
+                    }
+                    drop(length);
+                }
+                buffer.flip();
+            }
+            if (!buffer.hasRemaining()) return null;
+            String dirPath = SegmentRoller.genDirPath(setting);
+            String prefix = setting.getLogPrefix();
+            String name = (TextUtils.isEmpty(prefix) ? "" : prefix + "_") + "dump_"
+                    + TimeFormatter.get(DUMP_TIME_FORMAT).format(
+                    TimeUtils.getZoneMillis(System.currentTimeMillis(), setting.getZoneOffset()))
+                    + setting.getLogSuffix();
+            if (!FileUtils.createDir(dirPath)) return null;
+            File file = new File(dirPath, name);
+            FileOutputStream stream = null;
+            try {
+                stream = new FileOutputStream(file, true);
+                FileChannel channel = stream.getChannel();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                return file;
+            } catch (IOException e) {
+                Log.e(TAG, "dumpSync()#catch", e);
+                return null;
+            } finally {
+                if (null != stream) {
+                    try {
+                        stream.close();
+                    } catch (IOException e) {
+                        Log.e(TAG, "dumpSync()#finally", e);
+                    }
+                }
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // 环形缓冲区，只在持有锁时访问
+    ///////////////////////////////////////////////////////////////////////////
+
+    private void append(long millis, DLevel level, String tag, String message) {
+        StringBuilder line = mLine;
+        line.setLength(0);
+        DSetting setting = mDSetting;
+        TimeFormatter.get(setting.getTimeFormat()).formatTo(TimeUtils.getZoneMillis(millis, setting.getZoneOffset()), line);
+        line.append(LEVEL_START).append(level.name()).append(' ').append(tag).append(LEVEL_END);
+        int maxBytes = mCapacity / 2 - RECORD_HEADER;
+        int lineEnd = line.length();
+        int fixed = utf8Length(line, lineEnd) + LINE_SEPARATOR.length();
+        int length = fixed + utf8Length(message, message.length());
+        int messageEnd = message.length();
+        boolean isTruncated = length > maxBytes;
+        if (isTruncated) {
+            int room = maxBytes - fixed - TRUNCATED.length();
+            if (room < 0) {
+                // 标签过长，行首也要截断，消息不再写入
+                lineEnd = fitChars(line, maxBytes - LINE_SEPARATOR.length() - TRUNCATED.length());
+                fixed = utf8Length(line, lineEnd) + LINE_SEPARATOR.length();
+                messageEnd = 0;
+            } else {
+                messageEnd = fitChars(message, room);
+            }
+            length = fixed + utf8Length(message, messageEnd) + TRUNCATED.length();
+        }
+        int size = RECORD_HEADER + length;
+        while (mUsed > 0 && mCapacity - mUsed < size) {
+            drop(getInt(mHead));
+        }
+        int pos = mTail;
+        pos = putInt(pos, length);
+        pos = putLong(pos, millis);
+        pos = putUtf8(pos, line, lineEnd);
+        pos = putUtf8(pos, message, messageEnd);
+        if (isTruncated) {
+            pos = putUtf8(pos, TRUNCATED, TRUNCATED.length());
+        }
+        pos = putUtf8(pos, LINE_SEPARATOR, LINE_SEPARATOR.length());
+        mTail = pos;
+        mUsed += size;
+        if (line.capacity() > 4096) {
+            line.setLength(0);
+            line.trimToSize();
+        }
+    }
+
+    /** 丢弃最早的一条记录 */
+    private void drop(int length) {
+        int size = RECORD_HEADER + length;
+        mHead = offset(mHead, size);
+        mUsed -= size;
+        if (0 == mUsed) {
+            mHead = mTail = 0;
+        }
+    }
+
+    private int offset(int pos, int delta) {
+        pos += delta;
+        return pos >= mCapacity ? pos - mCapacity : pos;
+    }
+
+    private void copy(int start, int length, ByteBuffer dst) {
+        int first = Math.min(length, mCapacity - start);
+        ByteBuffer src = mRing.duplicate();
+        src.limit(start + first).position(start);
+        dst.put(src);
+        if (first < length) {
+            src.limit(length - first).position(0);
+            dst.put(src);
+        }
+    }
+
+    private int getInt(int pos) {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = value << 8 | (mRing.get(pos) & 0xFF);
+            pos = offset(pos, 1);
+        }
+        return value;
+    }
+
+    private long getLong(int pos) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = value << 8 | (mRing.get(pos) & 0xFF);
+            pos = offset(pos, 1);
+        }
+        return value;
+    }
+
+    private int putByte(int pos, int b) {
+        mRing.put(pos, (byte) b);
+        return pos + 1 == mCapacity ? 0 : pos + 1;
+    }
+
+    private int putInt(int pos, int value) {
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            pos = putByte(pos, value >>> shift);
+        }
+        return pos;
+    }
+
+    private int putLong(int pos, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            pos = putByte(pos, (int) (value >>> shift));
+        }
+        return pos;
+    }
+
+    /**
+     * 写入s的前end个字符，不成对的代理字符写为'?'
+     */
+    private int putUtf8(int pos, CharSequence s, int end) {
+        for (int i = 0; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                pos = putByte(pos, c);
+            } else if (c < 0x800) {
+                pos = putByte(pos, 0xC0 | (c >> 6));
+                pos = putByte(pos, 0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                pos = putByte(pos, 0xF0 | (cp >> 18));
+                pos = putByte(pos, 0x80 | ((cp >> 12) & 0x3F));
+                pos = putByte(pos, 0x80 | ((cp >> 6) & 0x3F));
+                pos = putByte(pos, 0x80 | (cp & 0x3F));
+            } else if (isSurrogate(c)) {
+                pos = putByte(pos, '?');
+            } else {
+                pos = putByte(pos, 0xE0 | (c >> 12));
+                pos = putByte(pos, 0x80 | ((c >> 6) & 0x3F));
+                pos = putByte(pos, 0x80 | (c & 0x3F));
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * @return s的前end个字符编码为UTF-8的字节数，与{@link #putUtf8}一致
+     */
+    private static int utf8Length(CharSequence s, int end) {
+        int bytes = 0;
+        for (int i = 0; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(s.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += isSurrogate(c) ? 1 : 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return 编码后不超过maxBytes的字符数，不拆开代理对
+     */
+    private static int fitChars(CharSequence s, int maxBytes) {
+        int bytes = 0;
+        int i = 0;
+        int length = s.length();
+        while (i < length) {
+            char c = s.charAt(i);
+            int count;
+            int width = 1;
+            if (c < 0x80) {
+                count = 1;
+            } else if (c < 0x800) {
+                count = 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                count = 4;
+                width = 2;
+            } else {
+                count = isSurrogate(c) ? 1 : 3;
+            }
+            if (bytes + count > maxBytes) break;
+            bytes += count;
+            i += width;
+        }
+        return i;
+    }
+
+    private static boolean isSurrogate(char c) {
+        return c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE;
+    }
+}
@@ -19,6 +19,7 @@ package com.df.dlogger.printer;
 import android.support.annotation.NonNull;
 
 import com.df.dlogger.constant.DLevel;
+import com.df.dlogger.logger.LogEvent;
 
 /**
  * 打印接口.
@@ -33,4 +34,14 @@ public interface Printer {
      * @param message 信息
      */
     void print(@NonNull DLevel level, String tag, String message);
+
+    /**
+     * 日志打印输出，event交给Printer后由Printer负责回收.
+     *
+     * @param event 日志
+     */
+    default void print(@NonNull LogEvent event) {
+        print(event.getLevel(), event.getTag(), event.getMessageString());
+        event.recycle();
+    }
 }
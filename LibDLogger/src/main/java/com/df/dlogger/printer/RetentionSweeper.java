@@ -0,0 +1,240 @@
+package com.df.dlogger.printer;
+
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.df.dlogger.logger.DSetting;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 在后台线程清理过期的日志文件，按保留天数、总大小和文件个数从最早的文件开始删除.
+ * 开启压缩时已关闭的日志文件先压缩为.gz，配额按压缩后的大小计算.
+ * <p>
+ * 第一次清理或日志目录、文件名规则变化时扫描一次目录，之后只在切换文件时更新内存中按修改时间排序的文件列表;
+ * 写文件线程只负责提交任务，清理和压缩都在单独的后台线程中进行，不占用FileUtils的线程，
+ * 避免dump和flush排在耗时的压缩之后.
+ */
+final class RetentionSweeper {
+
+    private static final String TAG = "RetentionSweeper";
+
+    private static final long DAY_MILLIS = 24 * 3600 * 1000L;
+
+    /** 清理和压缩的线程池，单线程模型，按提交顺序执行 */
+    private static final ExecutorService sExecutorService = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "DLog-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 已关闭的日志文件
+     */
+    private static final class Entry {
+        final File file;
+        final long size;
+        final long lastModified;
+
+        Entry(File file) {
+            this(file, file.length(), file.lastModified());
+        }
+
+        Entry(File file, long size, long lastModified) {
+            this.file = file;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private static final Comparator<Entry> OLDEST_FIRST = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry lhs, Entry rhs) {
+            if (lhs.lastModified != rhs.lastModified) {
+                return lhs.lastModified < rhs.lastModified ? -1 : 1;
+            }
+            return lhs.file.getName().compareTo(rhs.file.getName());
+        }
+    };
+
+    /** 以下只在清理线程中访问 */
+    private final List<Entry> mCatalog = new ArrayList<>();
+    private long mTotalSize;
+    private String mCatalogKey;
+    private final CompressStats mCompressStats = new CompressStats();
+
+    /** 最近一次提交的文件，只在写文件线程中访问 */
+    private String mRequested;
+
+    /**
+     * 切换到新的日志文件时调用，在后台线程中清理；与上次是同一个文件时不处理.
+     *
+     * @param setting    日志设定
+     * @param dirPath    日志目录
+     * @param fileName   新的日志文件名
+     * @param closedPath 即将关闭的日志文件，没有时为null
+     * @param closedSize 即将关闭的日志文件的最终大小，包括还未写入的缓冲区
+     */
+    void request(@NonNull DSetting setting, @NonNull final String dirPath, @NonNull String fileName,
+                 final String closedPath, final long closedSize) {
+        final String filePath = dirPath + File.separator + fileName;
+        if (filePath.equals(mRequested)) return;
+        mRequested = filePath;
+        final long closedTime = System.currentTimeMillis();
+        String prefix = setting.getLogPrefix();
+        final String namePrefix = TextUtils.isEmpty(prefix) ? "" : prefix + "_";
+        final String nameSuffix = setting.getFileSuffix();
+        final int retainDays = setting.getRetainDays();
+        final long maxTotalSize = setting.getMaxTotalSize();
+        final int maxFileCount = setting.getMaxFileCount();
+        final int compressLevel = setting.getCompressLevel();
+        sExecutorService.execute(() -> {
+            try {
+                File active = new File(filePath);
+                if (null != closedPath && !closedPath.equals(filePath)) {
+                    onClosed(new Entry(new File(closedPath), closedSize, closedTime), compressLevel);
+                }
+                sweep(dirPath, namePrefix, nameSuffix, active, compressLevel, retainDays, maxTotalSize, maxFileCount);
+            } catch (Exception e) {
+                Log.e(TAG, "request(...)#catch", e);
+            }
+        });
+    }
+
+    /**
+     * @return 压缩统计
+     */
+    CompressStats getCompressStats() {
+        return mCompressStats;
+    }
+
+    private void sweep(String dirPath, String namePrefix, String nameSuffix, File active, int compressLevel,
+                       int retainDays, long maxTotalSize, int maxFileCount) {
+        String key = dirPath + File.pathSeparator + namePrefix + File.pathSeparator + nameSuffix;
+        boolean isRebuilt = !key.equals(mCatalogKey);
+        if (isRebuilt) {
+            rebuild(dirPath, namePrefix, nameSuffix);
+            mCatalogKey = key;
+        }
+        remove(active);
+        if (isRebuilt && compressLevel > 0) {
+            // 上次运行留下的未压缩文件
+            compressAll(nameSuffix, compressLevel);
+        }
+
+        long cutoff = retainDays < 1 ? Long.MIN_VALUE : System.currentTimeMillis() - retainDays * DAY_MILLIS;
+        // 当前文件也占用配额，但不会被删除
+        long total = mTotalSize + active.length();
+        int count = mCatalog.size() + 1;
+        while (!mCatalog.isEmpty()) {
+            Entry oldest = mCatalog.get(0);
+            boolean isExpired = oldest.lastModified < cutoff;
+            boolean isOverSize = maxTotalSize > 0 && total > maxTotalSize;
+            boolean isOverCount = maxFileCount > 0 && count > maxFileCount;
+            if (!isExpired && !isOverSize && !isOverCount) break;
+            if (!oldest.file.delete() && oldest.file.exists()) {
+                Log.e(TAG, "sweep(...) cannot delete " + oldest.file);
+                break;
+            }
+            mCatalog.remove(0);
+            mTotalSize -= oldest.size;
+            total -= oldest.size;
+            count--;
+        }
+    }
+
+    /**
+     * 扫描目录，重建文件列表
+     */
+    private void rebuild(String dirPath, String namePrefix, String nameSuffix) {
+        mCatalog.clear();
+        mTotalSize = 0;
+        File[] files = new File(dirPath).listFiles();
+        if (null == files) return;
+        String gzSuffix = nameSuffix + SegmentCompressor.GZ_SUFFIX;
+        for (File file : files) {
+            String name = file.getName();
+            if (!file.isFile() || !name.startsWith(namePrefix) || DefaultPrinter.MMAP_FILE_NAME.equals(name)) {
+                continue;
+            }
+            if (name.endsWith(gzSuffix + SegmentCompressor.TMP_SUFFIX)) {
+                // 上次压缩中断留下的临时文件，原文件还在
+                file.delete();
+            } else if (name.endsWith(nameSuffix) || name.endsWith(gzSuffix)) {
+                Entry entry = new Entry(file);
+                mCatalog.add(entry);
+                mTotalSize += entry.size;
+            }
+        }
+        Collections.sort(mCatalog, OLDEST_FIRST);
+    }
+
+    /**
+     * 压缩列表中未压缩的文件，当前文件已从列表中移除
+     */
+    private void compressAll(String nameSuffix, int compressLevel) {
+        List<Entry> plain = new ArrayList<>();
+        for (Entry entry : mCatalog) {
+            if (entry.file.getName().endsWith(nameSuffix)) {
+                plain.add(entry);
+            }
+        }
+        for (Entry entry : plain) {
+            compress(entry, compressLevel);
+        }
+    }
+
+    /**
+     * 上一个文件已关闭，压缩后记入列表；只记录当前目录中的文件，目录变化时会重新扫描
+     */
+    private void onClosed(Entry entry, int compressLevel) {
+        if (null == mCatalogKey) return;
+        if (compressLevel > 0) {
+            compress(entry, compressLevel);
+        } else {
+            remove(entry.file);
+            insert(entry);
+        }
+    }
+
+    /**
+     * 压缩并替换列表中的原文件，失败时保留原文件
+     */
+    private void compress(Entry entry, int compressLevel) {
+        remove(entry.file);
+        File gz = SegmentCompressor.compress(entry.file, compressLevel, mCompressStats);
+        if (null == gz) {
+            insert(entry);
+            return;
+        }
+        // 已存在的同名.gz已合并到新文件中
+        remove(gz);
+        insert(new Entry(gz, gz.length(), entry.lastModified));
+    }
+
+    private void insert(Entry entry) {
+        int index = Collections.binarySearch(mCatalog, entry, OLDEST_FIRST);
+        mCatalog.add(index < 0 ? -index - 1 : index, entry);
+        mTotalSize += entry.size;
+    }
+
+    private void remove(File file) {
+        for (int i = mCatalog.size() - 1; i >= 0; i--) {
+            if (mCatalog.get(i).file.equals(file)) {
+                mTotalSize -= mCatalog.remove(i).size;
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.df.dlogger.printer;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 把已关闭的日志文件压缩为name.log.gz，只能在后台线程中调用.
+ * <p>
+ * 先写入name.log.gz.tmp并sync，再重命名为name.log.gz，最后删除原文件；任何一步中断都不会丢失日志:
+ * 残留的.tmp在下次扫描时删除，原文件会被重新压缩；重命名之后、删除原文件之前中断时，
+ * .gz最后一个成员的CRC32和长度与原文件相同，此时只删除原文件，不会重复追加.
+ * 已存在同名.gz时(例如进程被杀后又恢复出同名文件)把新内容作为另一个gzip成员追加在后面.
+ */
+final class SegmentCompressor {
+
+    private static final String TAG = "SegmentCompressor";
+
+    /** 压缩后的文件后缀 */
+    static final String GZ_SUFFIX = ".gz";
+    /** 压缩中的临时文件后缀 */
+    static final String TMP_SUFFIX = ".tmp";
+
+    private static final int BUFFER_SIZE = 32 * 1024;
+    /** gzip成员结尾的CRC32和原始长度 */
+    private static final int TRAILER_SIZE = 8;
+
+    private SegmentCompressor() {}
+
+    /**
+     * 压缩文件，期间把线程优先级降到最低.
+     *
+     * @param src   已关闭的日志文件
+     * @param level 压缩等级，1-9
+     * @param stats 统计
+     * @return 压缩后的文件，失败返回null
+     */
+    static File compress(@NonNull File src, int level, @NonNull CompressStats stats) {
+        int tid = Process.myTid();
+        int priority = Process.getThreadPriority(tid);
+        Process.setThreadPriority(Process.THREAD_PRIORITY_LOWEST);
+        long cpuStart = SystemClock.currentThreadTimeMillis();
+        long wallStart = SystemClock.elapsedRealtime();
+        File dst = new File(src.getPath() + GZ_SUFFIX);
+        File tmp = new File(dst.getPath() + TMP_SUFFIX);
+        try {
+            if (dst.exists() && isLastMember(dst, src)) {
+                // 上次已压缩并重命名，但没来得及删除原文件
+                if (!src.delete()) {
+                    Log.e(TAG, "compress(...) cannot delete " + src);
+                }
+                return dst;
+            }
+            long input = src.length();
+            write(src, dst, tmp, level);
+            if (!tmp.renameTo(dst)) {
+                throw new IOException("cannot rename " + tmp);
+            }
+            if (!src.delete()) {
+                Log.e(TAG, "compress(...) cannot delete " + src);
+            }
+            stats.recordFile(input, dst.length(), SystemClock.currentThreadTimeMillis() - cpuStart,
+                    SystemClock.elapsedRealtime() - wallStart);
+            return dst;
+        } catch (IOException e) {
+            Log.e(TAG, "compress(...)#catch", e);
+            tmp.delete();
+            stats.recordFail();
+            return null;
+        } finally {
+            Process.setThreadPriority(tid, priority);
+        }
+    }
+
+    private static void write(File src, File dst, File tmp, final int level) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        FileInputStream in = null;
+        FileOutputStream out = null;
+        GZIPOutputStream gzip = null;
+        try {
+            out = new FileOutputStream(tmp);
+            if (dst.exists()) {
+                copy(new FileInputStream(dst), out, buffer);
+            }
+            gzip = new GZIPOutputStream(out, BUFFER_SIZE) {
+                {
+                    def.setLevel(level);
+                }
+            };
+            in = new FileInputStream(src);
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                gzip.write(buffer, 0, n);
+            }
+            gzip.finish();
+            gzip.flush();
+            out.getFD().sync();
+        } finally {
+            close(in);
+            // 关闭时释放Deflater的本地内存，同时关闭out
+            close(gzip);
+            close(out);
+        }
+    }
+
+    /**
+     * 判断gz最后一个成员是否就是src压缩后的内容，按结尾的CRC32和原始长度比较
+     */
+    private static boolean isLastMember(File gz, File src) throws IOException {
+        long length = gz.length();
+        if (length < TRAILER_SIZE) return false;
+        byte[] trailer = new byte[TRAILER_SIZE];
+        RandomAccessFile raf = new RandomAccessFile(gz, "r");
+        try {
+            raf.seek(length - TRAILER_SIZE);
+            raf.readFully(trailer);
+        } finally {
+            close(raf);
+        }
+        if (readIntLE(trailer, 4) != (src.length() & 0xFFFFFFFFL)) return false;
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        FileInputStream in = new FileInputStream(src);
+        try {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, n);
+            }
+        } finally {
+            close(in);
+        }
+        return readIntLE(trailer, 0) == crc.getValue();
+    }
+
+    private static long readIntLE(byte[] b, int offset) {
+        return (b[offset] & 0xFFL) | (b[offset + 1] & 0xFFL) << 8
+                | (b[offset + 2] & 0xFFL) << 16 | (b[offset + 3] & 0xFFL) << 24;
+    }
+
+    private static void copy(FileInputStream in, OutputStream out, byte[] buffer) throws IOException {
+        try {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+        } finally {
+            close(in);
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        if (null == closeable) return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            Log.e(TAG, "close(...)#catch", e);
+        }
+    }
+}
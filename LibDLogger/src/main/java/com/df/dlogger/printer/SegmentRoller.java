@@ -0,0 +1,179 @@
+package com.df.dlogger.printer;
+
+import android.os.Environment;
+import android.support.annotation.NonNull;
+import android.text.TextUtils;
+
+import com.df.dlogger.constant.DSegment;
+import com.df.dlogger.logger.DSetting;
+import com.df.dlogger.util.TimeFormatter;
+
+import java.io.File;
+
+/**
+ * 日志文件的切片计算，只在跨过切片边界或者DSetting修改后才重新生成目录和文件名;
+ * 其余时候每条日志只需比较时间戳和设定版本.
+ * <p>
+ * 设置了{@link DSetting#getMaxFileSize()}时，同一切片内的文件写满后依次切换为
+ * name.1.log、name.2.log...，重新计算切片时从磁盘上已有的最大序号继续，已压缩的.gz也计算在内.
+ * <p>
+ * 非线程安全，只能在写文件线程中使用.
+ */
+final class SegmentRoller {
+
+    /** 日志文件名中的日期格式 */
+    private static final String DATE_FORMAT = "yyyy-MM-dd";
+
+    private static final long MINUTE_MILLIS = 60 * 1000L;
+    private static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+    private DSetting mSetting;
+    private int mVersion;
+    /** 当前切片的起止时间，UTC毫秒 */
+    private long mStart = Long.MAX_VALUE;
+    private long mEnd = Long.MIN_VALUE;
+
+    private String mDirPath;
+    private String mFileName;
+    /** 不含序号和后缀的文件名 */
+    private String mBaseName;
+    private String mSuffix;
+    /** 按大小切换的序号，0表示不带序号 */
+    private int mIndex;
+
+    /**
+     * 根据日志时间判断是否需要切换文件.
+     *
+     * @param setting    日志设定
+     * @param timeMillis 日志产生的时间
+     * @return true - 目录或文件名已重新生成
+     */
+    boolean roll(@NonNull DSetting setting, long timeMillis) {
+        if (timeMillis < mEnd && timeMillis >= mStart
+                && setting == mSetting && setting.getVersion() == mVersion) {
+            return false;
+        }
+        // 先取版本，计算期间被修改时下一条日志会再次计算
+        mVersion = setting.getVersion();
+        mSetting = setting;
+        long offset = setting.getZoneOffset().getValue();
+        long zoneMillis = timeMillis + offset;
+        long segmentMillis = setting.getLogSegment().getMillis();
+        long zoneStart = zoneMillis - (zoneMillis % segmentMillis + segmentMillis) % segmentMillis;
+        mStart = zoneStart - offset;
+        mEnd = mStart + segmentMillis;
+        mDirPath = genDirPath(setting);
+        mBaseName = genBaseName(setting, zoneStart);
+        mSuffix = setting.getFileSuffix();
+        mIndex = findIndex(setting.getMaxFileSize());
+        mFileName = genFileName();
+        return true;
+    }
+
+    /**
+     * 当前文件已写满，切换到下一个序号.
+     */
+    void rollBySize() {
+        mIndex++;
+        mFileName = genFileName();
+    }
+
+    /**
+     * 查找当前切片已有的最大序号(包括已压缩的)，该文件已写满或已压缩时返回下一个.
+     *
+     * @param maxFileSize 单个文件大小上限，0表示不限制
+     * @return 序号
+     */
+    private int findIndex(long maxFileSize) {
+        if (maxFileSize <= 0) return 0;
+        int index = 0;
+        while (exists(index + 1)) {
+            index++;
+        }
+        File file = new File(mDirPath, genFileName(index));
+        if (!file.exists()) {
+            return exists(index) ? index + 1 : index;
+        }
+        return file.length() >= maxFileSize ? index + 1 : index;
+    }
+
+    private boolean exists(int index) {
+        String fileName = genFileName(index);
+        return new File(mDirPath, fileName).exists()
+                || new File(mDirPath, fileName + SegmentCompressor.GZ_SUFFIX).exists();
+    }
+
+    /**
+     * @return 当前日志目录路径
+     */
+    String getDirPath() {
+        return mDirPath;
+    }
+
+    /**
+     * @return 当前日志文件名
+     */
+    String getFileName() {
+        return mFileName;
+    }
+
+    /**
+     * @return 下一个切片的开始时间，UTC毫秒
+     */
+    long getNextBoundary() {
+        return mEnd;
+    }
+
+    /**
+     * 生成日志目录路径.
+     *
+     * @param setting 日志设定
+     * @return 日志目录路径
+     */
+    static String genDirPath(@NonNull DSetting setting) {
+        return Environment.getExternalStorageDirectory().getAbsolutePath() + File.separator + setting.getLogDir();
+    }
+
+    private String genFileName() {
+        return genFileName(mIndex);
+    }
+
+    private String genFileName(int index) {
+        return 0 == index ? mBaseName + mSuffix : mBaseName + "." + index + mSuffix;
+    }
+
+    /**
+     * 生成不含序号和后缀的日志文件名，如prefix_2016-07-20_0001；不足一小时的切片带上分钟，如prefix_2016-07-20_00050010.
+     *
+     * @param setting   日志设定
+     * @param zoneStart 切片开始时间，已加上时区偏移
+     * @return 日志文件名
+     */
+    private static String genBaseName(@NonNull DSetting setting, long zoneStart) {
+        String logPrefix = setting.getLogPrefix();
+        logPrefix = TextUtils.isEmpty(logPrefix) ? "" : logPrefix + "_";
+        String curDate = TimeFormatter.get(DATE_FORMAT).format(zoneStart);
+        DSegment logSegment = setting.getLogSegment();
+        if (logSegment == DSegment.TWENTY_FOUR_HOURS) {
+            return logPrefix + curDate;
+        }
+        int start = (int) ((zoneStart % DAY_MILLIS + DAY_MILLIS) % DAY_MILLIS / MINUTE_MILLIS);
+        int end = (start + logSegment.getMinutes()) % (24 * 60);
+        if (logSegment.getValue() > 0) {
+            return logPrefix + curDate + "_" + getDoubleNum(start / 60) + getDoubleNum(end / 60);
+        }
+        return logPrefix + curDate + "_" + getDoubleNum(start / 60) + getDoubleNum(start % 60)
+                + getDoubleNum(end / 60) + getDoubleNum(end % 60);
+    }
+
+    /**
+     * 对于1-9的数值进行前置补0.
+     *
+     * @param num 数值
+     * @return num在[0, 9]时前置补0，否则返回原值
+     */
+    private static String getDoubleNum(int num) {
+        return num < 10 ? "0" + num : String.valueOf(num);
+    }
+}
@@ -0,0 +1,66 @@
+package com.df.dlogger.util;
+
+import android.support.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+/**
+ * CRC32C(Castagnoli)校验，java.util.zip.CRC32C需要API 26，这里用查表实现.
+ */
+public final class Crc32c implements Checksum {
+
+    private static final int POLY = 0x82F63B78;
+    private static final int[] TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int j = 0; j < 8; j++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLY : crc >>> 1;
+            }
+            TABLE[i] = crc;
+        }
+    }
+
+    private int mCrc = 0xFFFFFFFF;
+
+    @Override
+    public void update(int b) {
+        mCrc = (mCrc >>> 8) ^ TABLE[(mCrc ^ b) & 0xFF];
+    }
+
+    @Override
+    public void update(@NonNull byte[] b, int off, int len) {
+        int crc = mCrc;
+        for (int i = off, end = off + len; i < end; i++) {
+            crc = (crc >>> 8) ^ TABLE[(crc ^ b[i]) & 0xFF];
+        }
+        mCrc = crc;
+    }
+
+    /**
+     * 按绝对位置计算buffer中[from, to)的内容，不改变buffer的position
+     *
+     * @param buffer 数据
+     * @param from   起始位置
+     * @param to     结束位置
+     */
+    public void update(@NonNull ByteBuffer buffer, int from, int to) {
+        int crc = mCrc;
+        for (int i = from; i < to; i++) {
+            crc = (crc >>> 8) ^ TABLE[(crc ^ buffer.get(i)) & 0xFF];
+        }
+        mCrc = crc;
+    }
+
+    @Override
+    public long getValue() {
+        return ~mCrc & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void reset() {
+        mCrc = 0xFFFFFFFF;
+    }
+}
@@ -0,0 +1,512 @@
+package com.df.dlogger.util;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * 持续打开的日志文件，复用同一个FileChannel和直接内存缓冲区追加写入;
+ * 只有切换文件或者写入出错时才会重新打开.
+ * <p>
+ * {@link #append}只编码到缓冲区，{@link #flush()}时用一次gathering write写入全部缓冲区;
+ * 缓冲区写满时会自动flush.
+ * <p>
+ * {@link #beginRecord()}和{@link #endRecord()}之间的内容会加上{@link RecoveryScanner}描述的记录帧，
+ * 期间缓冲区不足时临时扩容而不写入文件，以便最后回填帧头.
+ * <p>
+ * 设置了{@link MmapBuffer}时flush只拷贝到映射文件，映射文件写满一半、{@link #sync()}或切换文件时才写入日志文件.
+ * <p>
+ * 非线程安全，只能在写文件线程中使用.
+ */
+public final class FileAppender {
+
+    private static final String TAG = "FileAppender";
+
+    /** 单个编码缓冲区大小 */
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /** 编码缓冲区个数 */
+    private static final int BUFFER_COUNT = 4;
+
+    /** 记录超过剩余空间时临时增加堆内缓冲区，写入后恢复为BUFFER_COUNT个 */
+    private ByteBuffer[] mBuffers = new ByteBuffer[BUFFER_COUNT];
+    /** 当前正在写入的缓冲区 */
+    private int mCurrent;
+    /** 写入系统调用的次数 */
+    private long mWriteCount;
+    /** 打开文件的次数 */
+    private long mOpenCount;
+
+    private String mDirPath;
+    private String mFileName;
+    private String mFilePath;
+    private FileOutputStream mStream;
+    private FileChannel mChannel;
+    /** 当前文件已写入(包括写入映射缓冲)的大小 */
+    private long mFileSize;
+
+    /** 内存映射缓冲，为null时直接写入文件 */
+    private MmapBuffer mMmap;
+
+    /** 编码方式：直接写入UTF-8或ASCII，其它字符集使用CharsetEncoder */
+    private static final int CODER_ENCODER = 0;
+    private static final int CODER_UTF_8 = 1;
+    private static final int CODER_ASCII = 2;
+
+    private Charset mCharset;
+    private CharsetEncoder mEncoder;
+    private int mCoder;
+
+    /** 正在写入的记录帧头所在的缓冲区和位置 */
+    private boolean isInRecord;
+    private int mRecordBuffer;
+    private int mRecordOffset;
+    private final Crc32c mCrc = new Crc32c();
+    private final byte[] mHeader = new byte[RecoveryScanner.HEADER_SIZE];
+
+    /**
+     * 打开文件，与当前打开的是同一个文件时不做任何处理.
+     *
+     * @param dirPath  目录路径
+     * @param fileName 文件名
+     * @return true - 新创建的空文件，需要写入文件头
+     * @throws IOException 打开失败
+     */
+    public boolean open(@NonNull String dirPath, @NonNull String fileName) throws IOException {
+        if (null != mChannel && dirPath.equals(mDirPath) && fileName.equals(mFileName)) {
+            return false;
+        }
+        close();
+        if (null == mBuffers[0]) {
+            for (int i = 0; i < BUFFER_COUNT; i++) {
+                mBuffers[i] = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            }
+        }
+        if (!FileUtils.createDir(dirPath)) {
+            throw new IOException("cannot create dir " + dirPath);
+        }
+        String filePath = dirPath + File.separator + fileName;
+        File file = new File(filePath);
+        mFileSize = file.length();
+        boolean isNew = 0 == mFileSize;
+        mStream = new FileOutputStream(file, true);
+        mChannel = mStream.getChannel();
+        mDirPath = dirPath;
+        mFileName = fileName;
+        mFilePath = filePath;
+        mOpenCount++;
+        if (null != mMmap) {
+            try {
+                mMmap.setTarget(filePath);
+            } catch (IOException e) {
+                // 无法记录目标文件时不再使用内存映射，直接写入文件
+                Log.e(TAG, "open(...)#catch", e);
+                mMmap.close();
+                mMmap = null;
+            }
+        }
+        return isNew;
+    }
+
+    /**
+     * 设置内存映射缓冲，原来的缓冲先写入当前文件再关闭.
+     *
+     * @param mmap 为null时直接写入文件；无法记录当前文件时关闭mmap，也直接写入文件
+     */
+    public void setMmap(MmapBuffer mmap) {
+        if (mmap == mMmap) return;
+        if (null != mMmap) {
+            flush();
+            sync();
+            mMmap.close();
+        }
+        mMmap = mmap;
+        if (null != mmap && null != mFilePath) {
+            try {
+                mmap.setTarget(mFilePath);
+            } catch (IOException e) {
+                Log.e(TAG, "setMmap(...)#catch", e);
+                mmap.close();
+                mMmap = null;
+            }
+        }
+    }
+
+    /**
+     * @return 内存映射缓冲
+     */
+    public MmapBuffer getMmap() {
+        return mMmap;
+    }
+
+    /**
+     * @return 当前是否打开了文件
+     */
+    public boolean isOpen() {
+        return null != mChannel;
+    }
+
+    /**
+     * @return 当前文件的完整路径，未打开时为null
+     */
+    public String getFilePath() {
+        return mFilePath;
+    }
+
+    /**
+     * @return 当前文件的大小，包括还在缓冲区中的内容
+     */
+    public long getFileSize() {
+        if (null == mChannel) return 0;
+        long size = mFileSize;
+        for (int i = 0; i <= mCurrent; i++) {
+            size += mBuffers[i].position();
+        }
+        return size;
+    }
+
+    /**
+     * @return 打开文件的次数，变化时表示切换了文件或出错后重新打开
+     */
+    public long getOpenCount() {
+        return mOpenCount;
+    }
+
+    /**
+     * @return 写入系统调用的次数
+     */
+    public long getWriteCount() {
+        return mWriteCount;
+    }
+
+    /**
+     * 编码到缓冲区，缓冲区写满时自动flush；出错时关闭文件，下次写入时重新打开.
+     * <p>
+     * UTF-8和ASCII直接逐字符写入缓冲区，其它字符集复用同一个CharsetEncoder；无法编码的字符写为'?'.
+     *
+     * @param content 内容
+     * @param charset 字符集
+     */
+    public void append(@NonNull CharSequence content, @NonNull Charset charset) {
+        if (null == mChannel) return;
+        try {
+            if (charset != mCharset) {
+                setCharset(charset);
+            }
+            if (CODER_UTF_8 == mCoder) {
+                appendUtf8(content);
+            } else if (CODER_ASCII == mCoder) {
+                appendAscii(content);
+            } else {
+                CharsetEncoder encoder = mEncoder;
+                CharBuffer in = CharBuffer.wrap(content);
+                encoder.reset();
+                while (encoder.encode(in, mBuffers[mCurrent], true).isOverflow()) {
+                    nextBuffer();
+                }
+                while (encoder.flush(mBuffers[mCurrent]).isOverflow()) {
+                    nextBuffer();
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "append(...)#catch", e);
+            discard();
+            close();
+        }
+    }
+
+    private void appendUtf8(CharSequence content) throws IOException {
+        ByteBuffer buffer = mBuffers[mCurrent];
+        for (int i = 0, count = content.length(); i < count; i++) {
+            // 一个字符最多4字节，不足时换下一个缓冲区
+            if (buffer.remaining() < 4) {
+                nextBuffer();
+                buffer = mBuffers[mCurrent];
+            }
+            char c = content.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(content.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, content.charAt(++i));
+                buffer.put((byte) (0xF0 | (cp >> 18)));
+                buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (cp & 0x3F)));
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    private void appendAscii(CharSequence content) throws IOException {
+        ByteBuffer buffer = mBuffers[mCurrent];
+        for (int i = 0, count = content.length(); i < count; i++) {
+            if (!buffer.hasRemaining()) {
+                nextBuffer();
+                buffer = mBuffers[mCurrent];
+            }
+            char c = content.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(content.charAt(i + 1))) {
+                i++;
+            }
+            buffer.put(c < 0x80 ? (byte) c : (byte) '?');
+        }
+    }
+
+    private void setCharset(Charset charset) {
+        mCharset = charset;
+        String name = charset.name();
+        if ("UTF-8".equals(name)) {
+            mCoder = CODER_UTF_8;
+            mEncoder = null;
+        } else if ("US-ASCII".equals(name)) {
+            mCoder = CODER_ASCII;
+            mEncoder = null;
+        } else {
+            mCoder = CODER_ENCODER;
+            mEncoder = charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+    }
+
+    /**
+     * 把已编码的内容拷贝到缓冲区，缓冲区写满时自动flush；出错时关闭文件，下次写入时重新打开.
+     *
+     * @param src    内容
+     * @param offset 起始位置
+     * @param length 长度
+     */
+    public void append(@NonNull byte[] src, int offset, int length) {
+        if (null == mChannel) return;
+        try {
+            while (length > 0) {
+                // 写入前才换下一个缓冲区，写满时当前缓冲区仍是最后一个有内容的
+                ByteBuffer buffer = mBuffers[mCurrent];
+                if (!buffer.hasRemaining()) {
+                    nextBuffer();
+                    buffer = mBuffers[mCurrent];
+                }
+                int count = Math.min(length, buffer.remaining());
+                buffer.put(src, offset, count);
+                offset += count;
+                length -= count;
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "append(...)#catch", e);
+            discard();
+            close();
+        }
+    }
+
+    /**
+     * 把缓冲区中的内容一次写入文件.
+     *
+     * @return 写入的字节数
+     */
+    public long flush() {
+        if (null == mChannel) return 0;
+        try {
+            return writeBuffers();
+        } catch (IOException e) {
+            Log.e(TAG, "flush()#catch", e);
+            discard();
+            close();
+            return 0;
+        }
+    }
+
+    /**
+     * 把内存映射缓冲中的内容写入文件，没有设置映射缓冲时等同于{@link #flush()}.
+     *
+     * @return 写入的字节数
+     */
+    public long sync() {
+        if (null == mChannel) return 0;
+        try {
+            long total = writeBuffers();
+            return null == mMmap ? total : syncMmap();
+        } catch (IOException e) {
+            Log.e(TAG, "sync()#catch", e);
+            discard();
+            close();
+            return 0;
+        }
+    }
+
+    private long syncMmap() throws IOException {
+        long total = mMmap.writeTo(mChannel);
+        if (total > 0) {
+            mWriteCount++;
+        }
+        return total;
+    }
+
+    /**
+     * 开始一条带帧头的记录，先预留帧头的位置.
+     */
+    public void beginRecord() {
+        if (null == mChannel) return;
+        isInRecord = true;
+        mRecordBuffer = mCurrent;
+        mRecordOffset = mBuffers[mCurrent].position();
+        Arrays.fill(mHeader, (byte) 0);
+        append(mHeader, 0, mHeader.length);
+    }
+
+    /**
+     * 结束当前记录，回填同步标记、长度和CRC32C.
+     */
+    public void endRecord() {
+        if (!isInRecord) return;
+        isInRecord = false;
+        if (null == mChannel) return;
+        int length = -mRecordOffset - RecoveryScanner.HEADER_SIZE;
+        for (int i = mRecordBuffer; i <= mCurrent; i++) {
+            length += mBuffers[i].position();
+        }
+        byte[] header = mHeader;
+        System.arraycopy(RecoveryScanner.SYNC, 0, header, 0, 4);
+        putInt(header, 4, length);
+        mCrc.reset();
+        mCrc.update(header, 4, 4);
+        // 跳过帧头，计算内容的CRC
+        int buffer = mRecordBuffer;
+        int offset = mRecordOffset;
+        for (int i = 0; i < RecoveryScanner.HEADER_SIZE; i++) {
+            while (offset >= mBuffers[buffer].position()) {
+                buffer++;
+                offset = 0;
+            }
+            offset++;
+        }
+        for (; buffer <= mCurrent; buffer++, offset = 0) {
+            mCrc.update(mBuffers[buffer], offset, mBuffers[buffer].position());
+        }
+        putInt(header, 8, (int) mCrc.getValue());
+        buffer = mRecordBuffer;
+        offset = mRecordOffset;
+        for (byte b : header) {
+            while (offset >= mBuffers[buffer].position()) {
+                buffer++;
+                offset = 0;
+            }
+            mBuffers[buffer].put(offset++, b);
+        }
+    }
+
+    private static void putInt(byte[] b, int pos, int value) {
+        b[pos] = (byte) (value >>> 24);
+        b[pos + 1] = (byte) (value >>> 16);
+        b[pos + 2] = (byte) (value >>> 8);
+        b[pos + 3] = (byte) value;
+    }
+
+    private void nextBuffer() throws IOException {
+        if (mCurrent + 1 < mBuffers.length) {
+            mCurrent++;
+        } else if (isInRecord) {
+            ByteBuffer[] buffers = new ByteBuffer[mBuffers.length + 1];
+            System.arraycopy(mBuffers, 0, buffers, 0, mBuffers.length);
+            buffers[mBuffers.length] = ByteBuffer.allocate(BUFFER_SIZE);
+            mBuffers = buffers;
+            mCurrent++;
+        } else {
+            writeBuffers();
+        }
+    }
+
+    private long writeBuffers() throws IOException {
+        int count = mCurrent + 1;
+        long pending = 0;
+        for (int i = 0; i < count; i++) {
+            mBuffers[i].flip();
+            pending += mBuffers[i].remaining();
+        }
+        if (null != mMmap) {
+            if (pending > mMmap.remaining()) {
+                syncMmap();
+            }
+            if (pending <= mMmap.remaining()) {
+                for (int i = 0; i < count; i++) {
+                    mMmap.put(mBuffers[i]);
+                }
+                mMmap.commit();
+                mFileSize += pending;
+                discard();
+                if (mMmap.length() >= mMmap.capacity() / 2) {
+                    syncMmap();
+                }
+                return pending;
+            }
+        }
+        long total = 0;
+        while (total < pending) {
+            total += mChannel.write(mBuffers, 0, count);
+            mWriteCount++;
+        }
+        mFileSize += total;
+        discard();
+        return total;
+    }
+
+    private void discard() {
+        for (int i = 0; i <= mCurrent; i++) {
+            mBuffers[i].clear();
+        }
+        mCurrent = 0;
+        if (mBuffers.length > BUFFER_COUNT) {
+            ByteBuffer[] buffers = new ByteBuffer[BUFFER_COUNT];
+            System.arraycopy(mBuffers, 0, buffers, 0, BUFFER_COUNT);
+            mBuffers = buffers;
+        }
+    }
+
+    /**
+     * 写入缓冲区和内存映射缓冲中的内容并关闭当前文件
+     */
+    public void close() {
+        if (null != mChannel) {
+            try {
+                writeBuffers();
+                if (null != mMmap) {
+                    syncMmap();
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "close()#catch", e);
+                discard();
+                if (null != mMmap) {
+                    mMmap.reset();
+                }
+            }
+        }
+        if (null != mStream) {
+            try {
+                mStream.close();
+            } catch (IOException e) {
+                Log.e(TAG, "close()#catch", e);
+            }
+        }
+        mStream = null;
+        mChannel = null;
+        mDirPath = null;
+        mFileName = null;
+        mFilePath = null;
+    }
+}
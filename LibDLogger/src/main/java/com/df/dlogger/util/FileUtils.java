@@ -25,10 +25,18 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * 文件工具类.
@@ -73,7 +81,37 @@ public class FileUtils {
     }
 
     /**
-     * 把文本写入文件中.
+     * 在读写文件的线程中执行.
+     *
+     * @param task 任务
+     */
+    public static void execute(@NonNull Runnable task) {
+        sExecutorService.execute(task);
+    }
+
+    /**
+     * 等待读写文件的线程执行完之前提交的任务，不能在该线程中调用.
+     *
+     * @param timeoutMillis 最长等待时间
+     * @return true - 已完成，false - 超时或被中断
+     */
+    public static boolean await(long timeoutMillis) {
+        Future<?> barrier = sExecutorService.submit(() -> {});
+        try {
+            barrier.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            return true;
+        }
+    }
+
+    /**
+     * 把文本写入文件中，字符集在调用线程中按DSetting查找.
      *
      * @param dirPath    目录路径
      * @param fileName   文件名
@@ -82,28 +120,72 @@ public class FileUtils {
      */
     public static void write(@NonNull final String dirPath, @NonNull final String fileName,
                              @NonNull final String content, final boolean isOverride) {
-        sExecutorService.execute(() -> {
-            String filePath = dirPath + File.separator + fileName;
-            FileOutputStream fos = null;
-            try {
-                if (createDir(dirPath)) {
-                    File file = new File(filePath);
-                    boolean isExist = file.exists();
-                    fos = new FileOutputStream(file, !(!isExist || isOverride));
-                    fos.write(content.getBytes(DLog.getInstance().getSetting().getCharset()));
+        final Charset charset = charset();
+        sExecutorService.execute(() -> writeSync(dirPath, fileName, content, isOverride, charset));
+    }
+
+    /**
+     * 在当前线程把文本写入文件中.
+     *
+     * @param dirPath    目录路径
+     * @param fileName   文件名
+     * @param content    待写内容
+     * @param isOverride 写入模式，true - 覆盖，false - 追加
+     */
+    public static void writeSync(@NonNull String dirPath, @NonNull String fileName,
+                                 @NonNull CharSequence content, boolean isOverride) {
+        writeSync(dirPath, fileName, content, isOverride, charset());
+    }
+
+    /**
+     * 按DSetting查找字符集，与写日志文件一样，不支持时使用UTF-8.
+     *
+     * @return 字符集
+     */
+    private static Charset charset() {
+        try {
+            return Charset.forName(DLog.getInstance().getSetting().getCharset());
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "charset()#catch", e);
+            return Charset.forName("UTF-8");
+        }
+    }
+
+    /**
+     * 在当前线程把文本按指定字符集写入文件中，直接从content编码，不生成中间的String.
+     *
+     * @param dirPath    目录路径
+     * @param fileName   文件名
+     * @param content    待写内容
+     * @param isOverride 写入模式，true - 覆盖，false - 追加
+     * @param charset    字符集
+     */
+    public static void writeSync(@NonNull String dirPath, @NonNull String fileName,
+                                 @NonNull CharSequence content, boolean isOverride, @NonNull Charset charset) {
+        String filePath = dirPath + File.separator + fileName;
+        FileOutputStream fos = null;
+        try {
+            if (createDir(dirPath)) {
+                File file = new File(filePath);
+                boolean isExist = file.exists();
+                fos = new FileOutputStream(file, !(!isExist || isOverride));
+                FileChannel channel = fos.getChannel();
+                ByteBuffer buffer = charset.encode(CharBuffer.wrap(content));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
                 }
-            } catch (IOException e) {
-                Log.e(TAG, "write(...)#catch", e);
-            } finally {
-                if (fos != null) {
-                    try {
-                        fos.close();
-                    } catch (IOException e) {
-                        Log.e(TAG, "write(...)#finally", e);
-                    }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "write(...)#catch", e);
+        } finally {
+            if (fos != null) {
+                try {
+                    fos.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "write(...)#finally", e);
                 }
             }
-        });
+        }
     }
 
 
@@ -0,0 +1,77 @@
+package com.df.dlogger.util;
+
+import android.support.annotation.NonNull;
+
+/**
+ * 把长日志切分为logcat能完整显示的块.
+ * <p>
+ * logcat按UTF-8字节限制单条日志的长度，这里按字节而不是字符计算；块尽量在换行处结束，
+ * 且不会拆开UTF-16代理对. 只计算边界，不复制内容.
+ */
+public final class LogChunker {
+
+    /** logcat单条日志内容的最大字节数，留出标签和头部的空间 */
+    public static final int MAX_BYTES = 4000;
+
+    private LogChunker() {}
+
+    /**
+     * 判断整条信息是否不需要切分，只看长度，不逐字符计算.
+     *
+     * @param s        信息
+     * @param maxBytes 每块最大字节数
+     * @return true - 一定不超过maxBytes
+     */
+    public static boolean fits(@NonNull CharSequence s, int maxBytes) {
+        // 一个char最多编码为3字节，代理对为4字节
+        return s.length() <= maxBytes / 3;
+    }
+
+    /**
+     * 计算从start开始的一块的结束位置.
+     * <p>
+     * 窗口内有换行时在最后一个换行之后结束(块包括换行符)，否则在字节数达到上限前结束；
+     * 单个字符超过上限时也至少包含一个字符，保证能向前推进.
+     *
+     * @param s        信息
+     * @param start    起始位置
+     * @param maxBytes 每块最大字节数
+     * @return 结束位置(不包括)，即下一块的起始位置
+     */
+    public static int next(@NonNull CharSequence s, int start, int maxBytes) {
+        int length = s.length();
+        int bytes = 0;
+        int i = start;
+        while (i < length) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (++bytes > maxBytes) break;
+                i++;
+                continue;
+            }
+            int count;
+            int width = 1;
+            if (c < 0x800) {
+                count = 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                count = 4;
+                width = 2;
+            } else {
+                count = 3;
+            }
+            bytes += count;
+            if (bytes > maxBytes) break;
+            i += width;
+        }
+        if (i >= length) return length;
+        if (i == start) {
+            // 单个字符超过上限
+            return Character.isHighSurrogate(s.charAt(i)) && i + 1 < length ? i + 2 : i + 1;
+        }
+        // 从后向前找最后一个换行
+        for (int j = i; j > start; j--) {
+            if ('\n' == s.charAt(j - 1)) return j;
+        }
+        return i;
+    }
+}
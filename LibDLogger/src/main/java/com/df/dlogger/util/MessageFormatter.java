@@ -0,0 +1,158 @@
+package com.df.dlogger.util;
+
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * 日志消息格式化，使用'{}'作为占位符，依次替换为参数.
+ * <p>
+ * 1-3个参数有单独的方法，避免生成可变参数数组；多余的参数会被忽略，多余的占位符原样保留.
+ * 可变参数的方法至少需要4个参数，否则 debug(tag, content, null) 这类调用会与Throwable参数的方法冲突.
+ */
+public final class MessageFormatter {
+
+    /** 占位符 */
+    private static final String DELIM = "{}";
+
+    /** 线程内复用的StringBuilder超过该容量后丢弃，避免长期持有大对象 */
+    private static final int MAX_REUSE_CAPACITY = 8 * 1024;
+
+    private static final ThreadLocal<StringBuilder> sBuilder = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
+
+    private MessageFormatter() {
+        throw new UnsupportedOperationException("cannot be instantiated");
+    }
+
+    public static String format(@NonNull String format, Object arg) {
+        StringBuilder sb = obtain();
+        formatTo(sb, format, 1, arg, null, null);
+        return release(sb);
+    }
+
+    public static String format(@NonNull String format, Object arg1, Object arg2) {
+        StringBuilder sb = obtain();
+        formatTo(sb, format, 2, arg1, arg2, null);
+        return release(sb);
+    }
+
+    public static String format(@NonNull String format, Object arg1, Object arg2, Object arg3) {
+        StringBuilder sb = obtain();
+        formatTo(sb, format, 3, arg1, arg2, arg3);
+        return release(sb);
+    }
+
+    public static String format(@NonNull String format, Object arg1, Object arg2, Object arg3, Object... more) {
+        return format(format, toArray(arg1, arg2, arg3, more));
+    }
+
+    public static String format(@NonNull String format, Object[] args) {
+        StringBuilder sb = obtain();
+        formatTo(sb, format, args);
+        return release(sb);
+    }
+
+    /**
+     * 格式化最多3个参数到sb中.
+     *
+     * @param sb     输出
+     * @param format 格式，'{}'为占位符
+     * @param count  参数个数，0-3
+     */
+    public static void formatTo(@NonNull StringBuilder sb, @NonNull String format, int count,
+                                Object arg1, Object arg2, Object arg3) {
+        int from = 0;
+        for (int i = 0; i < count; i++) {
+            int index = format.indexOf(DELIM, from);
+            if (index < 0) break;
+            sb.append(format, from, index);
+            appendArg(sb, 0 == i ? arg1 : 1 == i ? arg2 : arg3);
+            from = index + DELIM.length();
+        }
+        sb.append(format, from, format.length());
+    }
+
+    /**
+     * 格式化任意个参数到sb中.
+     *
+     * @param sb     输出
+     * @param format 格式，'{}'为占位符
+     * @param args   参数
+     */
+    public static void formatTo(@NonNull StringBuilder sb, @NonNull String format, Object[] args) {
+        int from = 0;
+        int count = null == args ? 0 : args.length;
+        for (int i = 0; i < count; i++) {
+            int index = format.indexOf(DELIM, from);
+            if (index < 0) break;
+            sb.append(format, from, index);
+            appendArg(sb, args[i]);
+            from = index + DELIM.length();
+        }
+        sb.append(format, from, format.length());
+    }
+
+    /**
+     * 合并为一个参数数组
+     *
+     * @return [arg1, arg2, arg3, more...]
+     */
+    public static Object[] toArray(Object arg1, Object arg2, Object arg3, Object[] more) {
+        int moreCount = null == more ? 0 : more.length;
+        Object[] args = new Object[3 + moreCount];
+        args[0] = arg1;
+        args[1] = arg2;
+        args[2] = arg3;
+        if (moreCount > 0) {
+            System.arraycopy(more, 0, args, 3, moreCount);
+        }
+        return args;
+    }
+
+    private static void appendArg(StringBuilder sb, Object arg) {
+        try {
+            if (!(arg instanceof Object[]) && (null == arg || !arg.getClass().isArray())) {
+                sb.append(arg);
+            } else if (arg instanceof Object[]) {
+                sb.append(Arrays.deepToString((Object[]) arg));
+            } else if (arg instanceof int[]) {
+                sb.append(Arrays.toString((int[]) arg));
+            } else if (arg instanceof long[]) {
+                sb.append(Arrays.toString((long[]) arg));
+            } else if (arg instanceof byte[]) {
+                sb.append(Arrays.toString((byte[]) arg));
+            } else if (arg instanceof short[]) {
+                sb.append(Arrays.toString((short[]) arg));
+            } else if (arg instanceof char[]) {
+                sb.append(Arrays.toString((char[]) arg));
+            } else if (arg instanceof float[]) {
+                sb.append(Arrays.toString((float[]) arg));
+            } else if (arg instanceof double[]) {
+                sb.append(Arrays.toString((double[]) arg));
+            } else {
+                sb.append(Arrays.toString((boolean[]) arg));
+            }
+        } catch (Throwable t) {
+            sb.append("[FAILED toString(): ").append(t.getClass().getName()).append(']');
+        }
+    }
+
+    private static StringBuilder obtain() {
+        StringBuilder sb = sBuilder.get();
+        sb.setLength(0);
+        return sb;
+    }
+
+    private static String release(StringBuilder sb) {
+        String result = sb.toString();
+        if (sb.capacity() > MAX_REUSE_CAPACITY) {
+            sBuilder.set(new StringBuilder(256));
+        }
+        return result;
+    }
+}
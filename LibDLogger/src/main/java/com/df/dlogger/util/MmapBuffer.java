@@ -0,0 +1,250 @@
+package com.df.dlogger.util;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * 内存映射的日志缓冲文件，写入只是一次内存拷贝，进程被杀后数据仍会由系统写回磁盘;
+ * 下次打开时把还没写入日志文件的数据追加到原来的日志文件中.
+ * <p>
+ * 文件格式：4字节魔数，4字节数据长度，2字节目标文件路径长度+路径(UTF-8)，数据从{@link #HEADER_SIZE}开始.
+ * 数据拷贝完成后才更新长度，拷贝中途被杀的数据会被丢弃而不会写入半条.
+ * <p>
+ * 非线程安全，只能在写文件线程中使用.
+ */
+public final class MmapBuffer {
+
+    private static final String TAG = "MmapBuffer";
+
+    /** 文件头大小 */
+    public static final int HEADER_SIZE = 512;
+
+    private static final int MAGIC = 0x444C4D4D;
+    private static final int OFFSET_LENGTH = 4;
+    private static final int OFFSET_TARGET = 8;
+    private static final int MAX_TARGET_BYTES = HEADER_SIZE - OFFSET_TARGET - 2;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File mFile;
+    private final RandomAccessFile mRaf;
+    private final MappedByteBuffer mMap;
+    private final int mCapacity;
+    private int mLength;
+    private String mTarget;
+
+    private MmapBuffer(File file, RandomAccessFile raf, MappedByteBuffer map) {
+        mFile = file;
+        mRaf = raf;
+        mMap = map;
+        mCapacity = map.capacity() - HEADER_SIZE;
+    }
+
+    /**
+     * 打开(或创建)映射文件，文件中残留的数据会先追加到其目标日志文件中.
+     *
+     * @param file 映射文件
+     * @param size 数据区大小
+     * @return MmapBuffer
+     * @throws IOException 映射失败
+     */
+    public static MmapBuffer open(@NonNull File file, int size) throws IOException {
+        recover(file);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            long total = HEADER_SIZE + (long) size;
+            if (raf.length() != total) {
+                raf.setLength(total);
+            }
+            MappedByteBuffer map = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, total);
+            map.putInt(0, MAGIC);
+            map.putShort(OFFSET_TARGET, (short) 0);
+            MmapBuffer buffer = new MmapBuffer(file, raf, map);
+            buffer.reset();
+            return buffer;
+        } catch (IOException e) {
+            close(raf);
+            throw e;
+        }
+    }
+
+    /**
+     * 把映射文件中残留的数据追加到其目标日志文件，然后清空.
+     *
+     * @param file 映射文件
+     * @return 恢复的字节数
+     */
+    public static long recover(@NonNull File file) {
+        if (!file.isFile() || file.length() <= HEADER_SIZE) return 0;
+        RandomAccessFile raf = null;
+        FileOutputStream fos = null;
+        try {
+            raf = new RandomAccessFile(file, "rw");
+            byte[] header = new byte[HEADER_SIZE];
+            raf.readFully(header);
+            ByteBuffer hb = ByteBuffer.wrap(header);
+            int length = hb.getInt(OFFSET_LENGTH);
+            int targetBytes = hb.getShort(OFFSET_TARGET) & 0xFFFF;
+            if (hb.getInt(0) != MAGIC || length <= 0 || length > raf.length() - HEADER_SIZE
+                    || targetBytes <= 0 || targetBytes > MAX_TARGET_BYTES) {
+                return 0;
+            }
+            File target = new File(new String(header, OFFSET_TARGET + 2, targetBytes, UTF_8));
+            File parent = target.getParentFile();
+            if (null != parent && !FileUtils.createDir(parent.getAbsolutePath())) return 0;
+            fos = new FileOutputStream(target, true);
+            FileChannel out = fos.getChannel();
+            FileChannel in = raf.getChannel();
+            long written = 0;
+            while (written < length) {
+                long n = in.transferTo(HEADER_SIZE + written, length - written, out);
+                if (n <= 0) break;
+                written += n;
+            }
+            raf.seek(OFFSET_LENGTH);
+            raf.writeInt(0);
+            return written;
+        } catch (IOException e) {
+            Log.e(TAG, "recover(...)#catch", e);
+            return 0;
+        } finally {
+            close(fos);
+            close(raf);
+        }
+    }
+
+    /**
+     * @return 映射文件
+     */
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * @return 数据区大小
+     */
+    public int capacity() {
+        return mCapacity;
+    }
+
+    /**
+     * @return 已缓存的数据长度
+     */
+    public int length() {
+        return mLength;
+    }
+
+    /**
+     * @return 剩余空间
+     */
+    public int remaining() {
+        return mCapacity - mLength;
+    }
+
+    /**
+     * @return 数据所属的日志文件
+     */
+    public String getTarget() {
+        return mTarget;
+    }
+
+    /**
+     * 设置数据所属的日志文件，只能在缓冲区为空时调用.
+     *
+     * @param target 日志文件完整路径
+     * @throws IOException 路径过长，文件头中放不下，此时不能使用内存映射
+     */
+    public void setTarget(@NonNull String target) throws IOException {
+        if (target.equals(mTarget)) return;
+        if (0 != mLength) {
+            throw new IllegalStateException("mmap buffer not empty");
+        }
+        byte[] bytes = target.getBytes(UTF_8);
+        // 截断后恢复时会追加到错误的文件中
+        if (bytes.length > MAX_TARGET_BYTES) {
+            throw new IOException("target path too long: " + target);
+        }
+        int count = bytes.length;
+        for (int i = 0; i < count; i++) {
+            mMap.put(OFFSET_TARGET + 2 + i, bytes[i]);
+        }
+        mMap.putShort(OFFSET_TARGET, (short) count);
+        mTarget = target;
+    }
+
+    /**
+     * 拷贝src中的剩余数据，{@link #commit()}之后才能在进程被杀后恢复.
+     *
+     * @param src 数据
+     */
+    public void put(@NonNull ByteBuffer src) {
+        int count = src.remaining();
+        if (count > remaining()) {
+            throw new IllegalStateException("mmap buffer overflow");
+        }
+        mMap.position(HEADER_SIZE + mLength);
+        mMap.put(src);
+        mLength += count;
+    }
+
+    /**
+     * 更新文件头中的数据长度
+     */
+    public void commit() {
+        mMap.putInt(OFFSET_LENGTH, mLength);
+    }
+
+    /**
+     * 把缓存的数据写入channel并清空.
+     *
+     * @param channel 目标日志文件
+     * @return 写入的字节数
+     * @throws IOException 写入失败
+     */
+    public int writeTo(@NonNull FileChannel channel) throws IOException {
+        if (0 == mLength) return 0;
+        ByteBuffer data = mMap.duplicate();
+        data.limit(HEADER_SIZE + mLength).position(HEADER_SIZE);
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+        int count = mLength;
+        reset();
+        return count;
+    }
+
+    /**
+     * 清空缓存的数据
+     */
+    public void reset() {
+        mLength = 0;
+        mMap.putInt(OFFSET_LENGTH, 0);
+    }
+
+    /**
+     * 关闭映射文件，没有写入日志文件的数据保留到下次打开时恢复.
+     */
+    public void close() {
+        commit();
+        close(mRaf);
+    }
+
+    private static void close(Closeable closeable) {
+        if (null == closeable) return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            Log.e(TAG, "close(...)#catch", e);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.df.dlogger.util;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 读取带记录帧的日志文件，跳过损坏的区域并从下一条有效记录继续.
+ * <p>
+ * 每条记录：4字节同步标记{@link #SYNC}，4字节长度(大端)，4字节CRC32C(大端，覆盖长度和内容)，之后是内容.
+ * 同步标记的首字节0xF7不会出现在UTF-8文本中；校验失败时只向后移动一个字节重新查找同步标记，
+ * 因此恢复的开销与损坏的字节数成正比.
+ */
+public final class RecoveryScanner {
+
+    /** 同步标记 */
+    static final byte[] SYNC = {(byte) 0xF7, 'D', 'L', (byte) 0x9E};
+    /** 帧头长度：同步标记+长度+CRC */
+    static final int HEADER_SIZE = 12;
+    /** 单条记录的最大长度，超过的视为损坏 */
+    static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    private final InputStream mIn;
+    private final Crc32c mCrc = new Crc32c();
+    private byte[] mWindow = new byte[64 * 1024];
+    /** 窗口中未处理数据的起止位置 */
+    private int mStart;
+    private int mEnd;
+    private boolean isEof;
+
+    private long mRecordCount;
+    private long mSkippedBytes;
+    private long mCorruptRegions;
+    private boolean isSkipping;
+
+    /** 最近一条记录在窗口中的位置 */
+    private int mRecordOffset;
+    private int mRecordLength;
+
+    public RecoveryScanner(@NonNull InputStream in) {
+        mIn = in;
+    }
+
+    /**
+     * 读取下一条有效记录.
+     *
+     * @return true - 读取成功，内容通过{@link #getBuffer()}、{@link #getOffset()}、{@link #getLength()}获取；
+     * false - 已读完
+     * @throws IOException 读取失败
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (!fill(HEADER_SIZE)) {
+                // 文件末尾不足一个帧头
+                skip(mEnd - mStart);
+                return false;
+            }
+            if (!isSync(mStart)) {
+                skip(1);
+                continue;
+            }
+            int length = readInt(mStart + 4);
+            if (length < 0 || length > MAX_RECORD_SIZE) {
+                skip(1);
+                continue;
+            }
+            if (!fill(HEADER_SIZE + length)) {
+                // 最后一条记录不完整，或者长度本身已损坏，继续在剩余数据中查找
+                skip(1);
+                continue;
+            }
+            mCrc.reset();
+            mCrc.update(mWindow, mStart + 4, 4);
+            mCrc.update(mWindow, mStart + HEADER_SIZE, length);
+            if ((int) mCrc.getValue() != readInt(mStart + 8)) {
+                skip(1);
+                continue;
+            }
+            isSkipping = false;
+            mRecordOffset = mStart + HEADER_SIZE;
+            mRecordLength = length;
+            mStart += HEADER_SIZE + length;
+            mRecordCount++;
+            return true;
+        }
+    }
+
+    /**
+     * @return 最近一条记录所在的数组，下次调用{@link #next()}后失效
+     */
+    public byte[] getBuffer() {
+        return mWindow;
+    }
+
+    /**
+     * @return 最近一条记录的起始位置
+     */
+    public int getOffset() {
+        return mRecordOffset;
+    }
+
+    /**
+     * @return 最近一条记录的长度
+     */
+    public int getLength() {
+        return mRecordLength;
+    }
+
+    /**
+     * @return 有效记录数
+     */
+    public long getRecordCount() {
+        return mRecordCount;
+    }
+
+    /**
+     * @return 跳过的损坏字节数
+     */
+    public long getSkippedBytes() {
+        return mSkippedBytes;
+    }
+
+    /**
+     * @return 损坏区域的个数
+     */
+    public long getCorruptRegions() {
+        return mCorruptRegions;
+    }
+
+    /**
+     * 把剩余的有效记录依次写入out，例如把文本格式的日志还原为普通文本.
+     *
+     * @param out 输出
+     * @return 写入的记录数
+     * @throws IOException 读写失败
+     */
+    public long copyTo(@NonNull OutputStream out) throws IOException {
+        long count = 0;
+        while (next()) {
+            out.write(mWindow, mRecordOffset, mRecordLength);
+            count++;
+        }
+        out.flush();
+        return count;
+    }
+
+    /**
+     * 把有效记录的内容依次拼接为一个输入流，例如交给BinaryDecoder解码.
+     *
+     * @param in 带记录帧的日志
+     * @return 去掉帧头和损坏区域后的内容
+     */
+    public static InputStream openStream(@NonNull InputStream in) {
+        final RecoveryScanner scanner = new RecoveryScanner(in);
+        return new InputStream() {
+            private int mPos;
+            private int mLimit;
+
+            @Override
+            public int read() throws IOException {
+                if (!ensure()) return -1;
+                return scanner.mWindow[mPos++] & 0xFF;
+            }
+
+            @Override
+            public int read(@NonNull byte[] b, int off, int len) throws IOException {
+                if (0 == len) return 0;
+                if (!ensure()) return -1;
+                int count = Math.min(len, mLimit - mPos);
+                System.arraycopy(scanner.mWindow, mPos, b, off, count);
+                mPos += count;
+                return count;
+            }
+
+            private boolean ensure() throws IOException {
+                while (mPos >= mLimit) {
+                    if (!scanner.next()) return false;
+                    mPos = scanner.getOffset();
+                    mLimit = mPos + scanner.getLength();
+                }
+                return true;
+            }
+
+            @Override
+            public void close() throws IOException {
+                scanner.mIn.close();
+            }
+        };
+    }
+
+    private boolean isSync(int pos) {
+        return mWindow[pos] == SYNC[0] && mWindow[pos + 1] == SYNC[1]
+                && mWindow[pos + 2] == SYNC[2] && mWindow[pos + 3] == SYNC[3];
+    }
+
+    private int readInt(int pos) {
+        return (mWindow[pos] & 0xFF) << 24 | (mWindow[pos + 1] & 0xFF) << 16
+                | (mWindow[pos + 2] & 0xFF) << 8 | (mWindow[pos + 3] & 0xFF);
+    }
+
+    private void skip(int count) {
+        if (count <= 0) return;
+        if (!isSkipping) {
+            isSkipping = true;
+            mCorruptRegions++;
+        }
+        mStart += count;
+        mSkippedBytes += count;
+    }
+
+    /**
+     * 保证窗口中至少有count字节未处理的数据
+     *
+     * @return false - 数据已读完仍然不足
+     */
+    private boolean fill(int count) throws IOException {
+        if (mEnd - mStart >= count) return true;
+        if (mStart + count > mWindow.length) {
+            byte[] window = count > mWindow.length ? new byte[Math.max(count, mWindow.length * 2)] : mWindow;
+            System.arraycopy(mWindow, mStart, window, 0, mEnd - mStart);
+            mEnd -= mStart;
+            mStart = 0;
+            mWindow = window;
+        }
+        while (!isEof && mEnd - mStart < count) {
+            int n = mIn.read(mWindow, mEnd, mWindow.length - mEnd);
+            if (n < 0) {
+                isEof = true;
+            } else {
+                mEnd += n;
+            }
+        }
+        return mEnd - mStart >= count;
+    }
+}
@@ -0,0 +1,195 @@
+package com.df.dlogger.util;
+
+import android.support.annotation.NonNull;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 线程安全的时间戳格式化，每个格式(及时区)一个缓存实例.
+ * <p>
+ * 同一秒内只格式化一次，缓存毫秒之前和之后的文本，之后只替换3位毫秒数字;
+ * 格式中没有'SSS'时整秒缓存；其它包含'S'的格式退化为加锁的SimpleDateFormat.
+ */
+public final class TimeFormatter {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final TimeZone DEFAULT = TimeZone.getDefault();
+
+    private static final ConcurrentHashMap<String, TimeFormatter> sFormatters = new ConcurrentHashMap<>();
+
+    /** 毫秒之前的部分 */
+    private final SimpleDateFormat mPrefixFormat;
+    /** 毫秒之后的部分，没有'SSS'时为null */
+    private final SimpleDateFormat mSuffixFormat;
+    /** 无法按秒缓存的格式 */
+    private final SimpleDateFormat mFullFormat;
+    /** 是否需要补3位毫秒 */
+    private final boolean isPatchMillis;
+
+    /** 当前秒的缓存 */
+    private volatile Second mSecond = new Second(Long.MIN_VALUE, "", "");
+
+    private TimeFormatter(@NonNull String pattern, @NonNull TimeZone zone) {
+        int[] run = findMillisRun(pattern);
+        if (null == run) {
+            mPrefixFormat = newFormat(pattern, zone);
+            mSuffixFormat = null;
+            mFullFormat = null;
+            isPatchMillis = false;
+        } else if (run[1] - run[0] == 3) {
+            mPrefixFormat = newFormat(pattern.substring(0, run[0]), zone);
+            mSuffixFormat = newFormat(pattern.substring(run[1]), zone);
+            mFullFormat = null;
+            isPatchMillis = true;
+        } else {
+            mPrefixFormat = null;
+            mSuffixFormat = null;
+            mFullFormat = newFormat(pattern, zone);
+            isPatchMillis = false;
+        }
+    }
+
+    /**
+     * 获取以UTC格式化的实例，传入的时间戳需已加上时区偏移(见{@link TimeUtils#getZoneMillis(long)}).
+     *
+     * @param pattern SimpleDateFormat格式
+     * @return TimeFormatter
+     */
+    public static TimeFormatter get(@NonNull String pattern) {
+        return get(pattern, UTC);
+    }
+
+    /**
+     * 获取指定时区的实例.
+     *
+     * @param pattern SimpleDateFormat格式
+     * @param zone    时区
+     * @return TimeFormatter
+     */
+    public static TimeFormatter get(@NonNull String pattern, @NonNull TimeZone zone) {
+        String key = zone == UTC ? pattern : zone.getID() + '|' + pattern;
+        TimeFormatter formatter = sFormatters.get(key);
+        if (null == formatter) {
+            formatter = new TimeFormatter(pattern, zone);
+            TimeFormatter old = sFormatters.putIfAbsent(key, formatter);
+            if (null != old) {
+                formatter = old;
+            }
+        }
+        return formatter;
+    }
+
+    /**
+     * 获取以设备默认时区格式化的实例.
+     *
+     * @param pattern SimpleDateFormat格式
+     * @return TimeFormatter
+     */
+    public static TimeFormatter getDefault(@NonNull String pattern) {
+        return get(pattern, DEFAULT);
+    }
+
+    /**
+     * 格式化时间戳.
+     *
+     * @param millis 时间戳
+     * @return 格式化后的时间文本
+     */
+    public String format(long millis) {
+        StringBuilder sb = new StringBuilder(32);
+        formatTo(millis, sb);
+        return sb.toString();
+    }
+
+    /**
+     * 格式化时间戳并追加到out中，同一秒内不产生新对象.
+     *
+     * @param millis 时间戳
+     * @param out    输出
+     */
+    public void formatTo(long millis, @NonNull StringBuilder out) {
+        if (null != mFullFormat) {
+            synchronized (mFullFormat) {
+                out.append(mFullFormat.format(new Date(millis)));
+            }
+            return;
+        }
+        long second = millis / 1000;
+        int milli = (int) (millis % 1000);
+        if (milli < 0) {
+            second--;
+            milli += 1000;
+        }
+        Second cache = mSecond;
+        if (cache.second != second) {
+            cache = refresh(second);
+        }
+        out.append(cache.prefix);
+        if (isPatchMillis) {
+            out.append((char) ('0' + milli / 100))
+                    .append((char) ('0' + milli / 10 % 10))
+                    .append((char) ('0' + milli % 10));
+            out.append(cache.suffix);
+        }
+    }
+
+    private synchronized Second refresh(long second) {
+        Second cache = mSecond;
+        if (cache.second == second) {
+            return cache;
+        }
+        Date date = new Date(second * 1000);
+        String prefix = mPrefixFormat.format(date);
+        String suffix = null == mSuffixFormat ? "" : mSuffixFormat.format(date);
+        cache = new Second(second, prefix, suffix);
+        mSecond = cache;
+        return cache;
+    }
+
+    private static SimpleDateFormat newFormat(String pattern, TimeZone zone) {
+        SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.CHINA);
+        format.setTimeZone(zone);
+        return format;
+    }
+
+    /**
+     * 查找引号外的'S'，只有一段时返回其[start, end)，没有返回null，多段返回[-1, -1].
+     */
+    private static int[] findMillisRun(String pattern) {
+        int[] run = null;
+        boolean inQuote = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                inQuote = !inQuote;
+            } else if (!inQuote && c == 'S') {
+                if (null != run) {
+                    return new int[]{-1, -1};
+                }
+                int end = i;
+                while (end < pattern.length() && pattern.charAt(end) == 'S') {
+                    end++;
+                }
+                run = new int[]{i, end};
+                i = end - 1;
+            }
+        }
+        return run;
+    }
+
+    private static final class Second {
+        final long second;
+        final String prefix;
+        final String suffix;
+
+        Second(long second, String prefix, String suffix) {
+            this.second = second;
+            this.prefix = prefix;
+            this.suffix = suffix;
+        }
+    }
+}
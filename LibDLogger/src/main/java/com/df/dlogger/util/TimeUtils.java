@@ -18,12 +18,10 @@ package com.df.dlogger.util;
 
 import android.support.annotation.NonNull;
 
+import com.df.dlogger.constant.DZoneOffset;
 import com.df.dlogger.logger.DLog;
 
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
-import java.util.Date;
-import java.util.Locale;
 
 /**
  * 时间工具类.
@@ -92,15 +90,29 @@ public class TimeUtils {
      * @return 格式化后的时间文本
      */
     public static String format(long millis, @NonNull String fmt) {
-        if (null == mFormat || !mFormat.equals(fmt)) {
-            mFormat = fmt;
-            mDateFormat = new SimpleDateFormat(fmt, Locale.CHINA);
-        }
-        return mDateFormat.format(new Date(millis));
+        return TimeFormatter.getDefault(fmt).format(millis);
     }
 
-    private static String mFormat;
-    private static SimpleDateFormat mDateFormat;
+    /**
+     * 把时间戳加上设置的时区偏移，结果以UTC格式化即为目标时区的时间，不需要创建Calendar.
+     *
+     * @param millis     时间戳
+     * @param zoneOffset 时区偏移
+     * @return 以UTC格式化用的时间戳
+     */
+    public static long getZoneMillis(long millis, @NonNull DZoneOffset zoneOffset) {
+        return millis + zoneOffset.getValue();
+    }
+
+    /**
+     * 把时间戳加上当前设置的时区偏移.
+     *
+     * @param millis 时间戳
+     * @return 以UTC格式化用的时间戳
+     */
+    public static long getZoneMillis(long millis) {
+        return getZoneMillis(millis, DLog.getInstance().getSetting().getZoneOffset());
+    }
 
 
     /**
@@ -0,0 +1,109 @@
+package com.df.dlogger.printer;
+
+import com.df.dlogger.constant.DLevel;
+import com.df.dlogger.logger.LogEvent;
+import com.df.dlogger.util.FileAppender;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 通过FileAppender写入BinaryEncoder编码的日志，再用BinaryDecoder还原，带记录帧和不带记录帧各一次.
+ */
+public class BinaryFormatTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int EVENTS = 3000;
+
+    private File mDir;
+
+    @Before
+    public void setUp() throws Exception {
+        mDir = File.createTempFile("binary", "");
+        assertTrue(mDir.delete() && mDir.mkdirs());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDir.listFiles();
+        if (null != files) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+
+    @Test
+    public void binary_roundTrip() throws Exception {
+        assertRoundTrip("a.log.bin", false);
+    }
+
+    @Test
+    public void binaryFramed_roundTrip() throws Exception {
+        assertRoundTrip("a.log.bin.framed", true);
+    }
+
+    private void assertRoundTrip(String fileName, boolean isFramed) throws Exception {
+        FileAppender appender = new FileAppender();
+        BinaryEncoder encoder = new BinaryEncoder();
+        assertTrue(appender.open(mDir.getPath(), fileName));
+        if (isFramed) appender.beginRecord();
+        // 初始化信息原样写入，与文本格式一样自带换行
+        encoder.begin(appender, true, 0, "info\n");
+        if (isFramed) appender.endRecord();
+        for (int i = 0; i < EVENTS; i++) {
+            LogEvent event = LogEvent.obtain(DLevel.INFO, "T" + i % 7).setContent(message(i));
+            if (isFramed) appender.beginRecord();
+            encoder.write(appender, event);
+            if (isFramed) appender.endRecord();
+            event.recycle();
+            // 多次flush，覆盖缓冲区恰好写满后flush的情况
+            if (i % 500 == 0) appender.flush();
+        }
+        appender.close();
+
+        File text = new File(mDir, fileName + ".txt");
+        BinaryDecoder.decode(new File(mDir, fileName), text);
+        String[] lines = read(text).split("\r?\n");
+        assertEquals("info", lines[0]);
+        assertEquals(EVENTS + 1, lines.length);
+        for (int i = 0; i < EVENTS; i++) {
+            String expected = "-[INFO T" + i % 7 + "]- " + message(i);
+            assertTrue(lines[i + 1], lines[i + 1].endsWith(expected));
+        }
+    }
+
+    private static String message(int i) {
+        StringBuilder sb = new StringBuilder("message ").append(i).append(" 中文😀 ");
+        for (int j = 0; j < i % 300; j++) {
+            sb.append((char) ('a' + j % 26));
+        }
+        return sb.toString();
+    }
+
+    private static String read(File file) throws Exception {
+        Reader in = new InputStreamReader(new FileInputStream(file), UTF_8);
+        try {
+            StringBuilder sb = new StringBuilder();
+            char[] buffer = new char[8192];
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                sb.append(buffer, 0, count);
+            }
+            return sb.toString();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.df.dlogger.printer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SegmentCompressor压缩后删除原文件之前中断，以及同名.gz追加.
+ */
+public class SegmentCompressorTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private File mDir;
+
+    @Before
+    public void setUp() throws Exception {
+        mDir = File.createTempFile("compress", "");
+        assertTrue(mDir.delete() && mDir.mkdirs());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDir.listFiles();
+        if (null != files) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+
+    @Test
+    public void compress_srcLeftAfterRename_notAppendedTwice() throws Exception {
+        File src = new File(mDir, "a.log");
+        write(src, "line 1\nline 2\n");
+        CompressStats stats = new CompressStats();
+        File gz = SegmentCompressor.compress(src, 6, stats);
+        assertFalse(src.exists());
+
+        // 重命名之后、删除原文件之前中断，原文件还在
+        write(src, "line 1\nline 2\n");
+        assertEquals(gz, SegmentCompressor.compress(src, 6, stats));
+        assertFalse(src.exists());
+        assertEquals("line 1\nline 2\n", read(gz));
+        assertEquals(1, stats.getFileCount());
+    }
+
+    @Test
+    public void compress_existingGz_appendsNewMember() throws Exception {
+        File src = new File(mDir, "a.log");
+        write(src, "first\n");
+        CompressStats stats = new CompressStats();
+        File gz = SegmentCompressor.compress(src, 6, stats);
+
+        write(src, "second\n");
+        assertEquals(gz, SegmentCompressor.compress(src, 6, stats));
+        assertFalse(src.exists());
+        assertEquals("first\nsecond\n", read(gz));
+        assertEquals(2, stats.getFileCount());
+    }
+
+    private static void write(File file, String content) throws Exception {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes(UTF_8));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String read(File gz) throws Exception {
+        InputStream in = new GZIPInputStream(new FileInputStream(gz));
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                out.write(buffer, 0, count);
+            }
+            return new String(out.toByteArray(), UTF_8);
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.df.dloggerTest;
+
+import com.df.dlogger.logger.CallSite;
+import com.df.dlogger.logger.CallerResolver;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 对比 Thread.getStackTrace()+拼接tag 与 CallerResolver 缓存调用点 的耗时.
+ * <p>
+ * 耗时对比只用于手动运行，不参与单元测试. 两者都要获取完整的栈，缓存只省去拼接tag的部分.
+ */
+public class CallerResolverBenchmark {
+
+    private static final int WARM_UP = 20_000;
+    private static final int ROUNDS = 200_000;
+
+    @Test
+    public void resolve_sameTagAsLegacy() throws Exception {
+        assertEquals(Facade.legacyTag(), Facade.cachedTag());
+        assertEquals("P/" + Facade.legacyTag(), Facade.cachedTag("P"));
+    }
+
+    @Ignore("耗时对比，需要时手动运行")
+    @Test
+    public void benchmark() throws Exception {
+        for (int i = 0; i < WARM_UP; i++) {
+            Facade.legacyTag();
+            Facade.cachedTag();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            Facade.legacyTag();
+        }
+        long legacy = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            Facade.cachedTag();
+        }
+        long cached = System.nanoTime() - start;
+
+        // 只比较栈帧之后的tag生成部分
+        StackTraceElement caller = new Throwable().getStackTrace()[0];
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            Facade.generateTag(caller);
+        }
+        long legacyTag = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            CallerResolver.get(caller).getTag();
+        }
+        long cachedTag = System.nanoTime() - start;
+
+        System.out.println("Thread.getStackTrace + generateTag : " + legacy / ROUNDS + " ns/op");
+        System.out.println("CallerResolver.resolve             : " + cached / ROUNDS + " ns/op");
+        System.out.println("generateTag(frame)                 : " + legacyTag / ROUNDS + " ns/op");
+        System.out.println("CallerResolver.get(frame)          : " + cachedTag / ROUNDS + " ns/op");
+    }
+
+    /** 模拟ULog，自身栈帧会被跳过 */
+    private static final class Facade {
+
+        /** 旧实现：ULog.generateTag(getCallerStackTraceElement()) */
+        static String legacyTag() {
+            return generateTag(Thread.currentThread().getStackTrace()[2]);
+        }
+
+        static String generateTag(StackTraceElement caller) {
+            String callerClazzName = caller.getClassName();
+            callerClazzName = callerClazzName.substring(callerClazzName.lastIndexOf(".") + 1);
+            int index = callerClazzName.indexOf("$");
+            if (index > 0) {
+                callerClazzName = callerClazzName.substring(0, index);
+            }
+            return "(" + callerClazzName + ".java:" + caller.getLineNumber() + ")" + "#" + caller.getMethodName();
+        }
+
+        static String cachedTag() {
+            return CallerResolver.resolve(Facade.class).getTag();
+        }
+
+        static String cachedTag(String prefix) {
+            CallSite site = CallerResolver.resolve(Facade.class);
+            return site.getTag(prefix);
+        }
+    }
+}
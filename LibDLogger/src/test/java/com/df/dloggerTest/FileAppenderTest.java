@@ -0,0 +1,194 @@
+package com.df.dloggerTest;
+
+import com.df.dlogger.util.Crc32c;
+import com.df.dlogger.util.FileAppender;
+import com.df.dlogger.util.MmapBuffer;
+import com.df.dlogger.util.RecoveryScanner;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * FileAppender的缓冲区边界、记录帧以及RecoveryScanner、Crc32c.
+ */
+public class FileAppenderTest {
+
+    /** 与FileAppender的单个缓冲区大小相同 */
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /** 记录帧头：同步标记、长度和CRC32C */
+    private static final int FRAME_HEADER_SIZE = 12;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private File mDir;
+    private FileAppender mAppender;
+
+    @Before
+    public void setUp() throws Exception {
+        mDir = File.createTempFile("appender", "");
+        assertTrue(mDir.delete() && mDir.mkdirs());
+        mAppender = new FileAppender();
+    }
+
+    @After
+    public void tearDown() {
+        mAppender.close();
+        File[] files = mDir.listFiles();
+        if (null != files) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+
+    @Test
+    public void append_exactlyFillsBuffer_flushWritesAll() throws Exception {
+        mAppender.open(mDir.getPath(), "a.log");
+        byte[] chunk = new byte[BUFFER_SIZE / 4];
+        Arrays.fill(chunk, (byte) 'x');
+        for (int i = 0; i < 4; i++) {
+            mAppender.append(chunk, 0, chunk.length);
+        }
+        assertEquals(BUFFER_SIZE, mAppender.getFileSize());
+        assertEquals(BUFFER_SIZE, mAppender.flush());
+        assertEquals(BUFFER_SIZE, new File(mDir, "a.log").length());
+    }
+
+    @Test
+    public void append_fillsAllBuffers_keepsEverything() throws Exception {
+        mAppender.open(mDir.getPath(), "a.log");
+        byte[] chunk = new byte[1000];
+        long total = 0;
+        // 多次恰好写满全部缓冲区，中途自动flush
+        for (int i = 0; i < 4 * BUFFER_SIZE * 3 / chunk.length + 1; i++) {
+            Arrays.fill(chunk, (byte) ('a' + i % 26));
+            mAppender.append(chunk, 0, chunk.length);
+            total += chunk.length;
+        }
+        byte[] tail = new byte[(int) (4L * BUFFER_SIZE - total % (4L * BUFFER_SIZE))];
+        mAppender.append(tail, 0, tail.length);
+        total += tail.length;
+        mAppender.flush();
+        assertEquals(total, new File(mDir, "a.log").length());
+    }
+
+    @Test
+    public void mmap_targetPathTooLong_writesDirectly() throws Exception {
+        // 文件头中放不下的路径不能截断，改为直接写入文件
+        StringBuilder sb = new StringBuilder(mDir.getPath());
+        while (sb.length() <= MmapBuffer.HEADER_SIZE) {
+            sb.append(File.separator).append("dddddddddddddddddddddddddddddddddddddddd");
+        }
+        String dirPath = sb.toString();
+        mAppender.setMmap(MmapBuffer.open(new File(mDir, "a.mmap"), BUFFER_SIZE));
+        mAppender.open(dirPath, "a.log");
+        assertNull(mAppender.getMmap());
+        byte[] data = "hello".getBytes(UTF_8);
+        mAppender.append(data, 0, data.length);
+        mAppender.flush();
+        File file = new File(dirPath, "a.log");
+        assertEquals(data.length, file.length());
+        assertTrue(file.delete());
+        for (File dir = file.getParentFile(); !dir.equals(mDir); dir = dir.getParentFile()) {
+            assertTrue(dir.delete());
+        }
+    }
+
+    @Test
+    public void record_roundTripsThroughScanner() throws Exception {
+        mAppender.open(mDir.getPath(), "a.log.framed");
+        String[] records = new String[300];
+        for (int i = 0; i < records.length; i++) {
+            StringBuilder sb = new StringBuilder("record ").append(i).append(" 中文 ");
+            // 记录跨越缓冲区边界，最大的超过单个缓冲区
+            for (int j = 0; j < i * i; j++) {
+                sb.append((char) ('a' + j % 26));
+            }
+            records[i] = sb.toString();
+            mAppender.beginRecord();
+            mAppender.append(records[i], UTF_8);
+            mAppender.endRecord();
+        }
+        mAppender.flush();
+
+        InputStream in = new FileInputStream(new File(mDir, "a.log.framed"));
+        try {
+            RecoveryScanner scanner = new RecoveryScanner(in);
+            for (String record : records) {
+                assertTrue(scanner.next());
+                assertEquals(record, new String(scanner.getBuffer(), scanner.getOffset(), scanner.getLength(), UTF_8));
+            }
+            assertFalse(scanner.next());
+            assertEquals(0, scanner.getCorruptRegions());
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void record_skipsCorruptRegion() throws Exception {
+        mAppender.open(mDir.getPath(), "a.log.framed");
+        for (int i = 0; i < 3; i++) {
+            mAppender.beginRecord();
+            mAppender.append("record " + i, UTF_8);
+            mAppender.endRecord();
+        }
+        mAppender.close();
+        File file = new File(mDir, "a.log.framed");
+        // 每条记录为12字节帧头加上8字节内容，破坏第二条记录的内容，CRC不再匹配
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(FRAME_HEADER_SIZE + 8 + FRAME_HEADER_SIZE + 1);
+            raf.write('#');
+        } finally {
+            raf.close();
+        }
+
+        InputStream in = new FileInputStream(file);
+        try {
+            RecoveryScanner scanner = new RecoveryScanner(in);
+            assertTrue(scanner.next());
+            assertEquals("record 0", new String(scanner.getBuffer(), scanner.getOffset(), scanner.getLength(), UTF_8));
+            assertTrue(scanner.next());
+            assertEquals("record 2", new String(scanner.getBuffer(), scanner.getOffset(), scanner.getLength(), UTF_8));
+            assertFalse(scanner.next());
+            assertEquals(1, scanner.getCorruptRegions());
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void crc32c_matchesKnownValues() {
+        Crc32c crc = new Crc32c();
+        crc.update("123456789".getBytes(UTF_8), 0, 9);
+        assertEquals(0xE3069283L, crc.getValue());
+
+        crc.reset();
+        crc.update(new byte[32], 0, 32);
+        assertEquals(0x8A9136AAL, crc.getValue());
+
+        // 分段计算与整体计算相同
+        byte[] data = "The quick brown fox jumps over the lazy dog".getBytes(UTF_8);
+        crc.reset();
+        crc.update(data, 0, data.length);
+        assertEquals(0x22620404L, crc.getValue());
+        crc.reset();
+        crc.update(data, 0, 10);
+        crc.update(data, 10, data.length - 10);
+        assertEquals(0x22620404L, crc.getValue());
+    }
+}
@@ -0,0 +1,142 @@
+package com.df.dloggerTest;
+
+import com.df.dlogger.util.LogChunker;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 对比 按4000字符substring切分 与 LogChunker 按字节和换行切分 100KB日志的耗时.
+ * <p>
+ * 耗时对比只用于手动运行，不参与单元测试.
+ */
+public class LogChunkerBenchmark {
+
+    private static final int WARM_UP = 200;
+    private static final int ROUNDS = 2_000;
+    private static final int MESSAGE_SIZE = 100 * 1024;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Test
+    public void chunk_keepsEverything() throws Exception {
+        for (String message : new String[]{lines(), chinese(), emoji()}) {
+            List<String> chunks = chunk(message);
+            StringBuilder joined = new StringBuilder();
+            for (String chunk : chunks) {
+                joined.append(chunk);
+                assertTrue(chunk.getBytes(UTF_8).length <= LogChunker.MAX_BYTES);
+                assertFalse(Character.isLowSurrogate(chunk.charAt(0)));
+                assertFalse(Character.isHighSurrogate(chunk.charAt(chunk.length() - 1)));
+            }
+            assertEquals(message, joined.toString());
+        }
+    }
+
+    @Test
+    public void chunk_prefersNewline() throws Exception {
+        List<String> chunks = chunk(lines());
+        for (int i = 0; i < chunks.size() - 1; i++) {
+            assertTrue(chunks.get(i).endsWith("\n"));
+        }
+    }
+
+    @Ignore("耗时对比，需要时手动运行")
+    @Test
+    public void benchmark() throws Exception {
+        String[] messages = {lines(), chinese()};
+        String[] names = {"ascii lines", "chinese    "};
+        for (int m = 0; m < messages.length; m++) {
+            String message = messages[m];
+            for (int i = 0; i < WARM_UP; i++) {
+                legacy(message);
+                chunked(message);
+            }
+
+            long start = System.nanoTime();
+            long sink = 0;
+            for (int i = 0; i < ROUNDS; i++) {
+                sink += legacy(message);
+            }
+            long legacy = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                sink += chunked(message);
+            }
+            long chunked = System.nanoTime() - start;
+
+            System.out.println(names[m] + " substring(4000 chars) : " + legacy / ROUNDS / 1000 + " us/op");
+            System.out.println(names[m] + " LogChunker            : " + chunked / ROUNDS / 1000 + " us/op (" + sink + ")");
+        }
+    }
+
+    /** 旧实现：每4000字符substring一次，最后不足4000的部分被丢弃 */
+    private static int legacy(String message) {
+        int count = 0;
+        int subNum = message.length() / 4000;
+        int index = 0;
+        for (int i = 0; i < subNum; i++) {
+            count += message.substring(index, index + 4000).length();
+            index += 4000;
+        }
+        return count;
+    }
+
+    private static int chunked(String message) {
+        int count = 0;
+        int length = message.length();
+        int start = 0;
+        while (start < length) {
+            int end = LogChunker.next(message, start, LogChunker.MAX_BYTES);
+            count += message.substring(start, end).length();
+            start = end;
+        }
+        return count;
+    }
+
+    private static List<String> chunk(String message) {
+        List<String> chunks = new ArrayList<>();
+        int start = 0;
+        while (start < message.length()) {
+            int end = LogChunker.next(message, start, LogChunker.MAX_BYTES);
+            chunks.add(message.substring(start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    /** 类似堆栈的多行ASCII文本 */
+    private static String lines() {
+        StringBuilder builder = new StringBuilder(MESSAGE_SIZE);
+        for (int i = 0; builder.length() < MESSAGE_SIZE; i++) {
+            builder.append("\tat com.df.dlogger.Sample.method").append(i).append("(Sample.java:").append(i).append(")\n");
+        }
+        return builder.toString();
+    }
+
+    /** 没有换行的中文，每个字符3字节 */
+    private static String chinese() {
+        StringBuilder builder = new StringBuilder(MESSAGE_SIZE);
+        while (builder.length() < MESSAGE_SIZE / 3) {
+            builder.append("日志切分");
+        }
+        return builder.toString();
+    }
+
+    /** 代理对和单字节字符交错，检查切分位置不会拆开代理对 */
+    private static String emoji() {
+        StringBuilder builder = new StringBuilder(MESSAGE_SIZE);
+        while (builder.length() < MESSAGE_SIZE / 4) {
+            builder.append("a😀");
+        }
+        return builder.toString();
+    }
+}